@@ -9,6 +9,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.wildfly.core.launcher.logger.LauncherMessages;
 
@@ -37,6 +38,23 @@ abstract class AbstractCommandBuilder<T extends AbstractCommandBuilder<T>> exten
         return getThis();
     }
 
+    @Override
+    public T setArgumentFileDirectory(final Path dir) {
+        super.setArgumentFileDirectory(dir);
+        return getThis();
+    }
+
+    @Override
+    public CompletableFuture<T> resolveJavaHomesAsync() {
+        return Jvm.resolveAll(getJvms()).thenApply(ignore -> getThis());
+    }
+
+    @Override
+    public T setClassDataSharingDirectory(final Path dir) {
+        super.setClassDataSharingDirectory(dir);
+        return getThis();
+    }
+
     @Override
     public T addModuleDir(final String moduleDir) {
         super.addModuleDir(moduleDir);
@@ -0,0 +1,306 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Manages the ahead-of-time cache, JEP 483, of a server launched with Java 24 or later.
+ * <p>
+ * The cache is created in three steps. A training launch records the classes loaded by the server with
+ * {@code -XX:AOTMode=record} until the server has booted and is then shut down normally, which writes the
+ * configuration. The cache is then created from the configuration with {@code -XX:AOTMode=create}. Following launches
+ * use the cache with {@code -XX:AOTCache}.
+ * </p>
+ * <p>
+ * The files are named like the {@linkplain ClassDataSharing class data sharing} archives, a new cache is created if the
+ * JDK build, installation or JVM options change. The {@linkplain Step step} a command is built for is passed to the
+ * builder for each command, so commands built while a cache is being trained use the cache as usual. Launches of a
+ * cache which is being trained by another launch do not wait for the training and are launched without a cache. If the
+ * training fails the server is launched without a cache and the training is not repeated in this JVM until the cache
+ * key changes.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class AotCache {
+
+    /**
+     * The modes a command is built for.
+     */
+    enum Mode {
+        /**
+         * Uses the cache if it exists.
+         */
+        USE,
+        /**
+         * Records the configuration for the cache.
+         */
+        RECORD,
+        /**
+         * Creates the cache from the configuration.
+         */
+        CREATE,
+    }
+
+    /**
+     * The step of creating or using the cache a single command is built for. A new step is used for each command.
+     */
+    static final class Step {
+        private final Mode mode;
+        private Path cache;
+
+        /**
+         * Creates a new step.
+         *
+         * @param mode the mode the command is built for
+         */
+        Step(final Mode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * Returns the cache file resolved for the options of the command.
+         *
+         * @return the cache file or {@code null} if the JVM does not support an ahead-of-time cache
+         */
+        Path getCache() {
+            return cache;
+        }
+    }
+
+    private static final int MIN_FEATURE_VERSION = 24;
+    private static final String CACHE_SUFFIX = ".aot";
+    private static final String CONFIGURATION_SUFFIX = ".aotconf";
+    private static final long BOOT_TIMEOUT_MINUTES = 5L;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60L;
+    // The caches being trained and the caches which failed to be trained, shared by all builders
+    private static final Set<Path> TRAINING = ConcurrentHashMap.newKeySet();
+    private static final Set<Path> FAILED = ConcurrentHashMap.newKeySet();
+
+    private final Path dir;
+    private final String name;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param dir  the directory the cache files are stored in
+     * @param name the name of the kind of process, for example {@code standalone}
+     */
+    AotCache(final Path dir, final String name) {
+        this.dir = dir.toAbsolutePath().normalize();
+        this.name = name + "-aot";
+    }
+
+    /**
+     * Returns the cache of the builder.
+     *
+     * @param builder the builder
+     *
+     * @return the cache or {@code null} if the builder does not use an ahead-of-time cache
+     */
+    static AotCache of(final CommandBuilder builder) {
+        if (builder instanceof StandaloneCommandBuilder) {
+            return ((StandaloneCommandBuilder) builder).getAotCache();
+        }
+        if (builder instanceof BootableJarCommandBuilder) {
+            return ((BootableJarCommandBuilder) builder).getAotCache();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the directory the cache files are stored in.
+     *
+     * @return the directory
+     */
+    Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Adds the options for the step to the end of the command. If the cache does not exist or is being trained, no
+     * options are added to a command using the cache.
+     *
+     * @param step      the step the command is built for
+     * @param jvm       the JVM the options are for
+     * @param cmd       the command to add the options to
+     * @param fromIndex the index of the first JVM option
+     * @param layout    the values identifying the installation
+     * @param sources   the files classes are loaded from
+     *
+     * @return {@code true} if class data sharing must not be used
+     */
+    boolean addOptions(final Step step, final Jvm jvm, final List<String> cmd, final int fromIndex,
+                       final List<String> layout, final List<Path> sources) {
+        if (jvm.getFeatureVersion() < MIN_FEATURE_VERSION) {
+            // The command of a training step is not launched
+            return step.mode != Mode.USE;
+        }
+        return addOptions(step, ClassDataSharing.key(name, jvm, cmd, fromIndex, layout, sources), cmd);
+    }
+
+    /**
+     * Adds the options for the step and the key of the command to the end of the command.
+     *
+     * @param step the step the command is built for
+     * @param key  the key identifying the cache files
+     * @param cmd  the command to add the options to
+     *
+     * @return {@code true} if class data sharing must not be used
+     */
+    boolean addOptions(final Step step, final String key, final List<String> cmd) {
+        final Path cache = dir.resolve(key + CACHE_SUFFIX);
+        final Path configuration = dir.resolve(key + CONFIGURATION_SUFFIX);
+        step.cache = cache;
+        switch (step.mode) {
+            case RECORD:
+                cmd.add("-XX:AOTMode=record");
+                cmd.add("-XX:AOTConfiguration=" + configuration);
+                return true;
+            case CREATE:
+                cmd.add("-XX:AOTMode=create");
+                cmd.add("-XX:AOTConfiguration=" + configuration);
+                cmd.add("-XX:AOTCache=" + cache);
+                return true;
+            default:
+                // The cache may be partially written while it is being trained
+                if (!TRAINING.contains(cache) && Files.isRegularFile(cache)) {
+                    ClassDataSharing.markUsed(cache);
+                    cmd.add("-XX:AOTCache=" + cache);
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Creates the cache for the builder if the JVM supports it and the cache does not exist.
+     *
+     * @param builder          the builder used to launch the process
+     * @param workingDirectory the working directory or {@code null}
+     * @param env              the environment variables to add
+     *
+     * @see #train(Function, File, Map)
+     */
+    void train(final CommandBuilder builder, final File workingDirectory, final Map<String, String> env) {
+        if (builder instanceof StandaloneCommandBuilder) {
+            train(((StandaloneCommandBuilder) builder)::build, workingDirectory, env);
+        } else if (builder instanceof BootableJarCommandBuilder) {
+            train(((BootableJarCommandBuilder) builder)::build, workingDirectory, env);
+        }
+    }
+
+    /**
+     * Creates the cache if the JVM supports it and the cache does not exist. The training processes are launched with
+     * the working directory and environment of the launch. Failures are ignored and the process is launched without a
+     * cache. If the cache is being trained by another launch this returns without waiting for the training.
+     *
+     * @param commands         builds the command for a step
+     * @param workingDirectory the working directory or {@code null}
+     * @param env              the environment variables to add
+     */
+    void train(final Function<Step, List<String>> commands, final File workingDirectory,
+               final Map<String, String> env) {
+        final Step createStep = new Step(Mode.CREATE);
+        final List<String> createCommand = commands.apply(createStep);
+        final Path cache = createStep.cache;
+        if (cache == null || FAILED.contains(cache) || Files.isRegularFile(cache) || !TRAINING.add(cache)) {
+            return;
+        }
+        final String fileName = cache.getFileName().toString();
+        final String key = fileName.substring(0, fileName.length() - CACHE_SUFFIX.length());
+        final Path configuration = dir.resolve(key + CONFIGURATION_SUFFIX);
+        try {
+            // Another launch may have finished the training since the cache was checked
+            if (Files.isRegularFile(cache)) {
+                return;
+            }
+            Files.createDirectories(dir);
+            ClassDataSharing.deleteStale(dir, key.substring(0, key.lastIndexOf('-') + 1), key);
+            record(commands.apply(new Step(Mode.RECORD)), workingDirectory, env);
+            if (Files.isRegularFile(configuration)) {
+                create(createCommand, workingDirectory, env);
+            }
+            if (!Files.isRegularFile(cache)) {
+                FAILED.add(cache);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ExecutionException | TimeoutException | RuntimeException e) {
+            FAILED.add(cache);
+        } finally {
+            TRAINING.remove(cache);
+            try {
+                Files.deleteIfExists(configuration);
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static void record(final List<String> command, final File workingDirectory, final Map<String, String> env)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        final Launcher launcher = Launcher.of(new TrainingCommand(command)).addEnvironmentVariables(env);
+        if (workingDirectory != null) {
+            launcher.setDirectory(workingDirectory);
+        }
+        final LaunchHandle handle = launcher.launchAsync();
+        final Process process = handle.started().get(BOOT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        try {
+            handle.booted().get(BOOT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        } finally {
+            // The configuration is written when the JVM exits normally
+            ProcessHelper.terminate(process, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void create(final List<String> command, final File workingDirectory, final Map<String, String> env)
+            throws IOException, InterruptedException, TimeoutException {
+        final ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(Redirect.DISCARD)
+                .directory(workingDirectory);
+        processBuilder.environment().putAll(env);
+        final Process process = processBuilder.start();
+        if (!process.waitFor(BOOT_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new TimeoutException();
+        }
+    }
+
+    /**
+     * The command of a training launch.
+     */
+    private static class TrainingCommand implements CommandBuilder {
+        private final List<String> command;
+
+        private TrainingCommand(final List<String> command) {
+            this.command = command;
+        }
+
+        @Override
+        public List<String> buildArguments() {
+            return command.subList(1, command.size());
+        }
+
+        @Override
+        public List<String> build() {
+            return command;
+        }
+    }
+}
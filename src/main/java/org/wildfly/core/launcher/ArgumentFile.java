@@ -0,0 +1,141 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Writes arguments to a Java {@code @argfile}. Argument files are supported by the {@code java} launcher of Java 9
+ * and later.
+ * <p>
+ * The name of the file is a hash of its contents. A file with the same arguments is only written once and is shared
+ * between all launches using the same arguments.
+ * </p>
+ * <p>
+ * Each launch using a file marks it as used. When a new file is written, the files in the directory which have not been
+ * used for a day are deleted like {@linkplain ClassDataSharing#deleteStale(Path, String, String) stale archives}.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class ArgumentFile {
+
+    private static final String FILE_PREFIX = "jvm-";
+    private static final String FILE_SUFFIX = ".args";
+
+    private ArgumentFile() {
+    }
+
+    /**
+     * Replaces the arguments from the {@code fromIndex}, inclusive, to the end of the command with a single
+     * {@code @argfile} argument. If the file cannot be written the command is left unchanged.
+     *
+     * @param dir       the directory to write the argument file to
+     * @param cmd       the command to replace the arguments in
+     * @param fromIndex the index of the first argument to replace
+     */
+    static void replace(final Path dir, final List<String> cmd, final int fromIndex) {
+        final List<String> args = cmd.subList(fromIndex, cmd.size());
+        if (args.isEmpty()) {
+            return;
+        }
+        final Path file = write(dir, args);
+        if (file != null) {
+            args.clear();
+            cmd.add("@" + file);
+        }
+    }
+
+    /**
+     * Writes the arguments to an argument file in the directory.
+     *
+     * @param dir  the directory to write the argument file to
+     * @param args the arguments to write
+     *
+     * @return the argument file or {@code null} if the file could not be written
+     */
+    static Path write(final Path dir, final List<String> args) {
+        final StringBuilder content = new StringBuilder(args.size() * 48);
+        for (String arg : args) {
+            appendArgument(content, arg);
+            content.append(System.lineSeparator());
+        }
+        final byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        final String fileName = FILE_PREFIX + JvmCache.toHex(JvmCache.sha256().digest(bytes)) + FILE_SUFFIX;
+        final Path file = dir.resolve(fileName);
+        if (Files.exists(file)) {
+            ClassDataSharing.markUsed(file);
+            return file;
+        }
+        Path tempFile = null;
+        try {
+            Files.createDirectories(dir);
+            // Write to a temporary file and move it so a concurrent launch never reads a partially written file
+            tempFile = Files.createTempFile(dir, FILE_PREFIX, ".tmp");
+            Files.write(tempFile, bytes);
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                ClassDataSharing.deleteStale(dir, FILE_PREFIX, fileName);
+            } catch (IOException ignore) {
+                // The files are deleted when the next file is written
+            }
+            return file;
+        } catch (IOException | SecurityException ignore) {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void appendArgument(final StringBuilder content, final String arg) {
+        boolean quote = arg.isEmpty();
+        for (int i = 0; i < arg.length() && !quote; i++) {
+            final char c = arg.charAt(i);
+            // Backslashes are escape characters in quoted arguments only, quote them so Windows paths are not altered
+            quote = Character.isWhitespace(c) || c == '"' || c == '\'' || c == '#' || c == '\\';
+        }
+        if (!quote) {
+            content.append(arg);
+            return;
+        }
+        content.append('"');
+        for (int i = 0; i < arg.length(); i++) {
+            final char c = arg.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    content.append('\\').append(c);
+                    break;
+                case '\n':
+                    content.append("\\n");
+                    break;
+                case '\r':
+                    content.append("\\r");
+                    break;
+                case '\t':
+                    content.append("\\t");
+                    break;
+                default:
+                    content.append(c);
+            }
+        }
+        content.append('"');
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Detects the messages WildFly logs once the server has booted, stopped or failed to boot in the raw bytes of the
+ * output of a process.
+ * <p>
+ * The output is scanned byte by byte for a {@code WFLYSRV} message id. The state of a partially matched id is kept
+ * between calls so an id split across two reads of the output is still detected. No {@code String} is created for
+ * the output and the detector does not buffer lines.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class BootMarkerDetector {
+
+    /**
+     * The state of the server described by a message.
+     */
+    enum Status {
+        /**
+         * {@code WFLYSRV0025}, the server has started.
+         */
+        STARTED(25),
+        /**
+         * {@code WFLYSRV0026}, the server has started with errors.
+         */
+        STARTED_WITH_ERRORS(26),
+        /**
+         * {@code WFLYSRV0050}, the server has stopped.
+         */
+        STOPPED(50),
+        /**
+         * {@code WFLYSRV0056}, the server boot has failed in an unrecoverable manner.
+         */
+        FAILED(56);
+
+        private final int id;
+
+        Status(final int id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns the message id, for example {@code WFLYSRV0025}.
+         *
+         * @return the message id
+         */
+        String getMessageId() {
+            return String.format("WFLYSRV%04d", id);
+        }
+
+        /**
+         * Indicates whether the server is running after this message was logged.
+         *
+         * @return {@code true} if the server has started
+         */
+        boolean isStarted() {
+            return this == STARTED || this == STARTED_WITH_ERRORS;
+        }
+
+        private static Status of(final int id) {
+            for (Status status : values()) {
+                if (status.id == id) {
+                    return status;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final byte[] PREFIX = "WFLYSRV".getBytes(StandardCharsets.US_ASCII);
+    private static final int ID_DIGITS = 4;
+
+    // The number of bytes of the prefix matched, followed by the number of digits of the id matched
+    private int matched;
+    private int id;
+    private Status status;
+
+    /**
+     * Scans the bytes for a boot message. Once a message has been found, further calls do not scan the bytes.
+     *
+     * @param bytes  the bytes to scan
+     * @param offset the offset of the first byte to scan
+     * @param length the number of bytes to scan
+     *
+     * @return the status found or {@code null} if no message has been found yet
+     */
+    Status update(final byte[] bytes, final int offset, final int length) {
+        if (status != null) {
+            return status;
+        }
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final byte b = bytes[i];
+            if (matched < PREFIX.length) {
+                if (b == PREFIX[matched]) {
+                    matched++;
+                } else {
+                    // None of the bytes in the prefix repeat the first byte, a mismatch can only restart the match
+                    matched = b == PREFIX[0] ? 1 : 0;
+                }
+            } else if (b >= '0' && b <= '9') {
+                id = (id * 10) + (b - '0');
+                if (++matched == PREFIX.length + ID_DIGITS) {
+                    status = Status.of(id);
+                    if (status != null) {
+                        return status;
+                    }
+                    reset();
+                }
+            } else {
+                reset();
+                matched = b == PREFIX[0] ? 1 : 0;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the status found.
+     *
+     * @return the status or {@code null} if no message has been found
+     */
+    Status getStatus() {
+        return status;
+    }
+
+    private void reset() {
+        matched = 0;
+        id = 0;
+    }
+}
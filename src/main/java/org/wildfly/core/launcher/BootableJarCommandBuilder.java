@@ -13,6 +13,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 
 import static org.wildfly.core.launcher.JBossModulesCommandBuilder.DEFAULT_VM_ARGUMENTS;
 
@@ -38,6 +39,9 @@ public class BootableJarCommandBuilder implements CommandBuilder {
     private final Path bootableJar;
     private Jvm jvm;
     private final Arguments serverArgs;
+    private Path classDataSharingDir;
+    private AotCache aotCache;
+    private GcProfile gcProfile;
 
     /**
      * Creates a new command builder for a bootable instance.
@@ -330,6 +334,51 @@ public class BootableJarCommandBuilder implements CommandBuilder {
         return addJavaOptions(javaOpts);
     }
 
+    /**
+     * Sets the garbage collector and runtime tuning profile. The options of the profile are checked against the
+     * version and vendor of the JVM when the command is built. If the JVM options already select a garbage collector
+     * the profile is not applied.
+     *
+     * @param profile the profile or {@code null} to not use a profile
+     *
+     * @return the builder
+     */
+    public BootableJarCommandBuilder setGcProfile(final GcProfile profile) {
+        gcProfile = profile;
+        return this;
+    }
+
+    /**
+     * Returns the garbage collector and runtime tuning profile.
+     *
+     * @return the profile or {@code null} if no profile is used
+     */
+    public GcProfile getGcProfile() {
+        return gcProfile;
+    }
+
+    /**
+     * Replaces the default {@code -Xms64m -Xmx512m} JVM arguments with the heap, metaspace and processor count
+     * options computed from the container limits. Options which are already set, for example an explicit
+     * {@code -Xmx}, are kept. Options added afterwards are added after the computed options and take precedence.
+     * <p>
+     * If no container memory limit is set the options are computed from the physical memory of the host, which is
+     * shared with the other processes of the host, and the maximum heap is capped at 2 GiB. When several servers are
+     * launched on a host without container limits, set an explicit {@code -Xmx} for each server.
+     * </p>
+     *
+     * @param ergonomics the ergonomics used to compute the options
+     *
+     * @return the builder
+     */
+    public BootableJarCommandBuilder applyErgonomics(final Ergonomics ergonomics) {
+        if (ergonomics == null) {
+            throw LauncherMessages.MESSAGES.nullParam("ergonomics");
+        }
+        ergonomics.apply(javaOpts);
+        return this;
+    }
+
     /**
      * Returns the JVM arguments.
      *
@@ -465,9 +514,85 @@ public class BootableJarCommandBuilder implements CommandBuilder {
         return this;
     }
 
+    /**
+     * Sets the directory used to store the class data sharing (AppCDS) archives. If set, the first launch records the
+     * classes loaded to an archive when the process exits and following launches map the archive to start faster.
+     * <p>
+     * An archive is only reused with the same JDK build, bootable JAR and JVM options. If any of these change, a new
+     * archive is recorded and the stale archive is deleted. Class data sharing archives require Java 13 or later, the
+     * directory is ignored for earlier versions.
+     * </p>
+     *
+     * @param dir the directory for the archives or {@code null} to not use class data sharing
+     *
+     * @return the builder
+     */
+    public BootableJarCommandBuilder setClassDataSharingDirectory(final Path dir) {
+        classDataSharingDir = dir == null ? null : dir.toAbsolutePath().normalize();
+        return this;
+    }
+
+    /**
+     * Returns the directory used to store the class data sharing archives.
+     *
+     * @return the directory or {@code null} if class data sharing is not used
+     */
+    public Path getClassDataSharingDirectory() {
+        return classDataSharingDir;
+    }
+
+    /**
+     * Sets the directory used to store the ahead-of-time cache. If set and the JVM is Java 24 or later, the first
+     * launch runs a training launch which records the classes loaded until the server has booted, shuts the server down
+     * and creates the cache. The launched server and following launches then use the cache to start faster.
+     * <p>
+     * The cache is only reused with the same JDK build, bootable JAR and JVM options. If any of these change, the
+     * training is run again on the next launch. Launches while the cache is being trained by another launch, and
+     * launches after the training failed, run without a cache. For earlier Java versions the directory is ignored. When
+     * the cache is used the {@linkplain #setClassDataSharingDirectory(Path) class data sharing directory} is ignored as
+     * the cache includes the class data.
+     * </p>
+     *
+     * @param dir the directory for the cache or {@code null} to not use an ahead-of-time cache
+     *
+     * @return the builder
+     */
+    public BootableJarCommandBuilder setAotCacheDirectory(final Path dir) {
+        aotCache = dir == null ? null : new AotCache(dir, "bootable-jar");
+        return this;
+    }
+
+    /**
+     * Returns the directory used to store the ahead-of-time cache.
+     *
+     * @return the directory or {@code null} if an ahead-of-time cache is not used
+     */
+    public Path getAotCacheDirectory() {
+        return aotCache == null ? null : aotCache.getDirectory();
+    }
+
+    AotCache getAotCache() {
+        return aotCache;
+    }
+
+    /**
+     * Starts resolving the capabilities of the Java home in the background. The capabilities are otherwise resolved
+     * when the command is {@linkplain #build() built}.
+     *
+     * @return a future completed with this builder once the Java home has been resolved
+     */
+    public CompletableFuture<BootableJarCommandBuilder> resolveJavaHomesAsync() {
+        return jvm.resolveAsync().thenApply(ignore -> this);
+    }
+
     @Override
     public List<String> buildArguments() {
+        return buildArguments(new AotCache.Step(AotCache.Mode.USE));
+    }
+
+    private List<String> buildArguments(final AotCache.Step step) {
         final List<String> cmd = new ArrayList<>(getJavaOptions());
+        GcProfile.addOptions(gcProfile, jvm, getJavaOptions(), cmd);
         final var serverArgs = getServerArguments();
         if (serverArgs.contains("-secmgr") && jvm.enhancedSecurityManagerAvailable()) {
             cmd.add(JBossModulesCommandBuilder.SECURITY_MANAGER_PROP_WITH_ALLOW_VALUE);
@@ -481,6 +606,14 @@ public class BootableJarCommandBuilder implements CommandBuilder {
         if (debugArg != null) {
             cmd.add(debugArg);
         }
+        final Path jar = bootableJar.toAbsolutePath().normalize();
+        // The ahead-of-time cache includes the class data
+        final boolean aot = aotCache != null && aotCache.addOptions(step, jvm, cmd, 0, List.of(jar.toString()),
+                List.of(jar));
+        if (!aot && classDataSharingDir != null) {
+            ClassDataSharing.addOptions(classDataSharingDir, "bootable-jar", jvm, cmd, 0, List.of(jar.toString()),
+                    List.of(jar));
+        }
 
         cmd.add("-jar");
 
@@ -503,9 +636,21 @@ public class BootableJarCommandBuilder implements CommandBuilder {
 
     @Override
     public List<String> build() {
+        return build(new AotCache.Step(AotCache.Mode.USE));
+    }
+
+    /**
+     * Builds the command for a step of creating or using the {@linkplain #setAotCacheDirectory(Path) ahead-of-time
+     * cache}.
+     *
+     * @param step the step the command is built for
+     *
+     * @return the command
+     */
+    List<String> build(final AotCache.Step step) {
         final List<String> cmd = new ArrayList<>();
         cmd.add(jvm.getCommand());
-        cmd.addAll(buildArguments());
+        cmd.addAll(buildArguments(step));
         return cmd;
     }
 
@@ -0,0 +1,262 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the JVM options to use a dynamic class data sharing (AppCDS) archive.
+ * <p>
+ * Archives are named {@code <name>-<layout>-<content>.jsa}. The layout hash identifies the installation, for example
+ * the WildFly home directory and module path. The content hash covers everything which invalidates an archive: the
+ * JDK build, the JVM options which change the classes loaded and the size and last modified time of the files classes
+ * are loaded from. System properties, log files and ports are not included so servers of the same installation, for
+ * example the servers of a pool, share an archive. When the content hash changes a new archive is recorded. Archives
+ * of the same layout with a different content hash are deleted once they have not been used for a day.
+ * </p>
+ * <p>
+ * On Java 19 and later the JVM creates, validates and regenerates the archive itself with
+ * {@code -XX:+AutoCreateSharedArchive}. On Java 13 to 18 the archive is recorded with
+ * {@code -XX:ArchiveClassesAtExit} when the process exits if it does not exist, otherwise it is used with
+ * {@code -XX:SharedArchiveFile}. While an archive is being recorded other launches run without an archive. Older
+ * JVMs do not support dynamic archives and no options are added.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class ClassDataSharing {
+
+    private static final int DYNAMIC_ARCHIVE_VERSION = 13;
+    private static final int AUTO_CREATE_VERSION = 19;
+    private static final String ARCHIVE_SUFFIX = ".jsa";
+    private static final String RECORDING_SUFFIX = ".recording";
+    // A recording which has not produced an archive after this time is assumed to have been killed
+    private static final long RECORDING_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10L);
+    // Files of a different key which have not been used for this time are deleted
+    private static final long STALE_MILLIS = TimeUnit.DAYS.toMillis(1L);
+    // Options followed by their value as a separate argument
+    private static final Set<String> SEPARATE_VALUE_OPTIONS = Set.of("--add-exports", "--add-modules", "--add-opens",
+            "--add-reads", "--class-path", "--limit-modules", "--module-path", "--patch-module",
+            "--upgrade-module-path", "-classpath", "-cp", "-p");
+    // -XX options with values which differ between processes, for example paths and file names
+    private static final Set<String> PER_PROCESS_OPTIONS = Set.of("ErrorFile=", "FlightRecorderOptions",
+            "HeapDumpPath=", "LogFile=", "OnError=", "OnOutOfMemoryError=", "StartFlightRecording");
+
+    private ClassDataSharing() {
+    }
+
+    /**
+     * Adds the class data sharing options to the end of the command.
+     *
+     * @param dir       the directory the archives are stored in
+     * @param name      the name of the kind of process, for example {@code standalone}
+     * @param jvm       the JVM the options are for
+     * @param cmd       the command to add the options to
+     * @param fromIndex the index of the first JVM option
+     * @param layout    the values identifying the installation
+     * @param sources   the files classes are loaded from
+     */
+    static void addOptions(final Path dir, final String name, final Jvm jvm, final List<String> cmd, final int fromIndex,
+                           final List<String> layout, final List<Path> sources) {
+        final int featureVersion = jvm.getFeatureVersion();
+        if (featureVersion < DYNAMIC_ARCHIVE_VERSION) {
+            return;
+        }
+        final String key = key(name, jvm, cmd, fromIndex, layout, sources);
+        final String prefix = key.substring(0, key.lastIndexOf('-') + 1);
+        final Path archive = dir.resolve(key + ARCHIVE_SUFFIX);
+        try {
+            Files.createDirectories(dir);
+            deleteStale(dir, prefix, archive.getFileName().toString());
+            if (featureVersion >= AUTO_CREATE_VERSION) {
+                if (isUsable(archive)) {
+                    markUsed(archive);
+                }
+                cmd.add("-XX:+AutoCreateSharedArchive");
+                cmd.add("-XX:SharedArchiveFile=" + archive);
+                return;
+            }
+            final Path recording = archive.resolveSibling(archive.getFileName() + RECORDING_SUFFIX);
+            if (isUsable(archive)) {
+                Files.deleteIfExists(recording);
+                markUsed(archive);
+                cmd.add("-XX:SharedArchiveFile=" + archive);
+            } else if (startRecording(recording)) {
+                cmd.add("-XX:ArchiveClassesAtExit=" + archive);
+            }
+        } catch (IOException ignore) {
+            // Launch without an archive
+        }
+    }
+
+    /**
+     * Creates the key identifying the files generated for the command, {@code <name>-<layout>-<content>}. Keys with
+     * the same prefix up to the last {@code -} are for the same installation.
+     *
+     * @param name      the name of the kind of process, for example {@code standalone}
+     * @param jvm       the JVM the options are for
+     * @param cmd       the command
+     * @param fromIndex the index of the first JVM option
+     * @param layout    the values identifying the installation
+     * @param sources   the files classes are loaded from
+     *
+     * @return the key
+     */
+    static String key(final String name, final Jvm jvm, final List<String> cmd, final int fromIndex,
+                      final List<String> layout, final List<Path> sources) {
+        final String layoutHash = hash(layout).substring(0, 16);
+        final MessageDigest content = JvmCache.sha256();
+        update(content, jvm.getPath().toString());
+        update(content, jvm.getRuntimeVersion());
+        update(content, jvm.getVendor());
+        for (String option : classLoadingOptions(cmd.subList(fromIndex, cmd.size()))) {
+            update(content, option);
+        }
+        for (Path source : sources) {
+            update(content, fingerprint(source));
+        }
+        return name + "-" + layoutHash + "-" + JvmCache.toHex(content.digest()).substring(0, 32);
+    }
+
+    /**
+     * Returns the options which change the classes loaded by the JVM or the validity of an archive. Options which
+     * differ between processes of the same installation, for example system properties with paths, log files and the
+     * debug port, are excluded so the processes share the files generated for them.
+     *
+     * @param options the JVM options
+     *
+     * @return the options relevant for the generated files
+     */
+    static List<String> classLoadingOptions(final List<String> options) {
+        final List<String> result = new ArrayList<>();
+        final Iterator<String> iter = options.iterator();
+        while (iter.hasNext()) {
+            final String option = iter.next();
+            if (SEPARATE_VALUE_OPTIONS.contains(option)) {
+                result.add(option);
+                if (iter.hasNext()) {
+                    result.add(iter.next());
+                }
+            } else if (isClassLoadingOption(option)) {
+                result.add(option);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the files of the same installation which were generated for a different key and have not been used
+     * recently. Files which are recent may still be written or mapped by a running process. Files which can not be
+     * deleted, for example as they are in use on Windows, are ignored.
+     *
+     * @param dir    the directory the files are stored in
+     * @param prefix the prefix of the key identifying the installation
+     * @param keep   the file name prefix of the files to keep
+     *
+     * @throws IOException if the directory could not be read
+     */
+    static void deleteStale(final Path dir, final String prefix, final String keep) throws IOException {
+        final long staleBefore = System.currentTimeMillis() - STALE_MILLIS;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : files) {
+                if (file.getFileName().toString().startsWith(keep)) {
+                    continue;
+                }
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < staleBefore) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException ignore) {
+                    // The file is in use or was deleted by another process
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the file as used so it is not {@linkplain #deleteStale(Path, String, String) deleted} as stale.
+     *
+     * @param file the file being used
+     */
+    static void markUsed(final Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignore) {
+            // The file is only deleted once it has not been used for a day
+        }
+    }
+
+    private static boolean isClassLoadingOption(final String option) {
+        if (option.startsWith("-XX:")) {
+            final String name = option.substring(4);
+            return PER_PROCESS_OPTIONS.stream().noneMatch(name::startsWith);
+        }
+        if (option.startsWith("-agentlib:jdwp") || option.startsWith("-Xrunjdwp") || option.startsWith("-Xlog")
+                || option.startsWith("-Xdebug")) {
+            return false;
+        }
+        if (option.startsWith("-D")) {
+            return option.startsWith("-Djava.system.class.loader=") || option.startsWith("-Djboss.modules.");
+        }
+        return option.startsWith("-X") || option.startsWith("--") || option.startsWith("-javaagent:")
+                || option.startsWith("-agentlib:") || option.startsWith("-agentpath:");
+    }
+
+    private static boolean isUsable(final Path archive) throws IOException {
+        return Files.isRegularFile(archive) && Files.size(archive) > 0L;
+    }
+
+    private static boolean startRecording(final Path recording) throws IOException {
+        try {
+            Files.createFile(recording);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            final FileTime modified = Files.getLastModifiedTime(recording);
+            if (System.currentTimeMillis() - modified.toMillis() > RECORDING_TIMEOUT_MILLIS) {
+                // The process recording the archive did not exit normally, record it again
+                Files.setLastModifiedTime(recording, FileTime.fromMillis(System.currentTimeMillis()));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static String fingerprint(final Path source) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+            return source + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return source + ":missing";
+        }
+    }
+
+    private static String hash(final List<String> values) {
+        final MessageDigest digest = JvmCache.sha256();
+        for (String value : values) {
+            update(digest, value);
+        }
+        return JvmCache.toHex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        // Separate the values so different values can not produce the same input
+        digest.update((byte) 0);
+    }
+}
@@ -660,7 +660,7 @@ public class CliCommandBuilder implements CommandBuilder {
             if (environment.getJvm().isModular()) {
                 cmd.addAll(JBossModulesCommandBuilder.DEFAULT_MODULAR_VM_ARGUMENTS);
                 for (final String optionalModularArgument : JBossModulesCommandBuilder.OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
-                    if (Jvm.isPackageAvailable(environment.getJvm().getPath(), optionalModularArgument)) {
+                    if (environment.getJvm().isPackageAvailable(optionalModularArgument)) {
                         cmd.add(optionalModularArgument);
                     }
                 }
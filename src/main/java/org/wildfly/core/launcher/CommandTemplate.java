@@ -0,0 +1,226 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * An immutable command compiled from a {@link CommandBuilder} with named holes which are filled in for each instance.
+ * <p>
+ * The command is built once. Each hole is defined by a name and the placeholder value the builder was configured
+ * with. Every occurrence of the placeholder in the command, including in arguments derived from it, is replaced with
+ * the value of the hole when an {@linkplain #instance(Map) instance} is created. Arguments without a placeholder are
+ * shared between all instances so creating an instance only builds the arguments which change.
+ * </p>
+ *
+ * <pre>
+ *     final StandaloneCommandBuilder builder = StandaloneCommandBuilder.of(wildflyHome)
+ *             .setBaseDirectory(templateBaseDir)
+ *             .addJavaOption("-Djboss.socket.binding.port-offset=@offset@")
+ *             .addJavaOption("-Djboss.node.name=@node@");
+ *     final CommandTemplate template = CommandTemplate.compile(builder, Map.of(
+ *             "baseDir", templateBaseDir.toString(),
+ *             "offset", "@offset@",
+ *             "node", "@node@"));
+ *     for (int i = 0; i < 200; i++) {
+ *         Launcher.of(template.instance(Map.of("baseDir", baseDirs[i], "offset", Integer.toString(i * 100),
+ *                 "node", "node" + i))).launch();
+ *     }
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class CommandTemplate {
+
+    private final String[] command;
+    private final String[] holes;
+    private final Map<String, Integer> holeIndexes;
+    private final int[] positions;
+    private final Object[][] segments;
+
+    private CommandTemplate(final String[] command, final String[] holes, final int[] positions,
+                            final Object[][] segments) {
+        this.command = command;
+        this.holes = holes;
+        this.positions = positions;
+        this.segments = segments;
+        final Map<String, Integer> holeIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < holes.length; i++) {
+            holeIndexes.put(holes[i], i);
+        }
+        this.holeIndexes = Collections.unmodifiableMap(holeIndexes);
+    }
+
+    /**
+     * Compiles the {@linkplain CommandBuilder#build() command} of the builder into a template.
+     * <p>
+     * Each entry in the {@code holes} map is the name of a hole and the placeholder value the builder was configured
+     * with. Placeholders must be unique enough to not match any other part of the command. If two placeholders match
+     * at the same position the longest placeholder is used.
+     * </p>
+     *
+     * @param builder the builder used to build the command
+     * @param holes   the names of the holes mapped to the placeholder values
+     *
+     * @return the compiled template
+     *
+     * @throws IllegalArgumentException if a placeholder does not appear in the command
+     */
+    public static CommandTemplate compile(final CommandBuilder builder, final Map<String, String> holes) {
+        if (builder == null) {
+            throw LauncherMessages.MESSAGES.nullParam("builder");
+        }
+        if (holes == null) {
+            throw LauncherMessages.MESSAGES.nullParam("holes");
+        }
+        final String[] names = new String[holes.size()];
+        final String[] placeholders = new String[holes.size()];
+        int index = 0;
+        for (Map.Entry<String, String> entry : holes.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                throw LauncherMessages.MESSAGES.nullParam(entry.getKey());
+            }
+            names[index] = entry.getKey();
+            placeholders[index++] = entry.getValue();
+        }
+        final String[] command = builder.build().toArray(new String[0]);
+        final boolean[] used = new boolean[names.length];
+        final List<Integer> positions = new ArrayList<>();
+        final List<Object[]> segments = new ArrayList<>();
+        for (int i = 0; i < command.length; i++) {
+            final Object[] argSegments = parse(command[i], placeholders, used);
+            if (argSegments != null) {
+                positions.add(i);
+                segments.add(argSegments);
+            }
+        }
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i]) {
+                throw LauncherMessages.MESSAGES.placeholderNotFound(placeholders[i], names[i]);
+            }
+        }
+        return new CommandTemplate(command, names, positions.stream().mapToInt(Integer::intValue).toArray(),
+                segments.toArray(new Object[0][]));
+    }
+
+    /**
+     * Returns the names of the holes in this template.
+     *
+     * @return the names of the holes
+     */
+    public Set<String> getHoles() {
+        return holeIndexes.keySet();
+    }
+
+    /**
+     * Creates an instance of the command with the holes replaced by the values. Only the arguments containing a hole
+     * are created, all other arguments are shared with the template.
+     *
+     * @param values the names of the holes mapped to the values, every hole requires a value
+     *
+     * @return a builder for the command of the instance
+     *
+     * @throws IllegalArgumentException if a hole does not have a value or a value is defined for an unknown hole
+     */
+    public CommandBuilder instance(final Map<String, String> values) {
+        if (values == null) {
+            throw LauncherMessages.MESSAGES.nullParam("values");
+        }
+        final String[] resolved = new String[holes.length];
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            final Integer index = holeIndexes.get(entry.getKey());
+            if (index == null) {
+                throw LauncherMessages.MESSAGES.unknownTemplateHole(entry.getKey());
+            }
+            resolved[index] = entry.getValue();
+        }
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] == null) {
+                throw LauncherMessages.MESSAGES.missingTemplateValue(holes[i]);
+            }
+        }
+        final String[] result = command.clone();
+        final StringBuilder sb = new StringBuilder(64);
+        for (int i = 0; i < positions.length; i++) {
+            for (Object segment : segments[i]) {
+                if (segment instanceof Integer) {
+                    sb.append(resolved[(Integer) segment]);
+                } else {
+                    sb.append((String) segment);
+                }
+            }
+            result[positions[i]] = sb.toString();
+            sb.setLength(0);
+        }
+        return new Instance(Collections.unmodifiableList(Arrays.asList(result)));
+    }
+
+    /**
+     * Splits the argument into the literal parts and the indexes of the placeholders found in the argument.
+     *
+     * @return the segments or {@code null} if the argument does not contain a placeholder
+     */
+    private static Object[] parse(final String arg, final String[] placeholders, final boolean[] used) {
+        List<Object> result = null;
+        int literalStart = 0;
+        int i = 0;
+        while (i < arg.length()) {
+            int match = -1;
+            for (int p = 0; p < placeholders.length; p++) {
+                if (arg.startsWith(placeholders[p], i) && (match < 0 || placeholders[p].length() > placeholders[match].length())) {
+                    match = p;
+                }
+            }
+            if (match < 0) {
+                i++;
+                continue;
+            }
+            if (result == null) {
+                result = new ArrayList<>();
+            }
+            if (i > literalStart) {
+                result.add(arg.substring(literalStart, i));
+            }
+            result.add(match);
+            used[match] = true;
+            i += placeholders[match].length();
+            literalStart = i;
+        }
+        if (result == null) {
+            return null;
+        }
+        if (literalStart < arg.length()) {
+            result.add(arg.substring(literalStart));
+        }
+        return result.toArray();
+    }
+
+    private static class Instance implements CommandBuilder {
+        private final List<String> command;
+
+        private Instance(final List<String> command) {
+            this.command = command;
+        }
+
+        @Override
+        public List<String> buildArguments() {
+            return command.subList(1, command.size());
+        }
+
+        @Override
+        public List<String> build() {
+            return command;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.wildfly.core.launcher.Arguments.Argument;
+import org.wildfly.core.launcher.logger.LauncherMessages;
 
 /**
  * Builds a list of commands used to launch a domain instance of WildFly.
@@ -34,6 +35,7 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
     private Jvm serverJvm;
     private Path baseDir;
     private final Arguments hostControllerJavaOpts;
+    private GcProfile gcProfile;
     private final Arguments processControllerJavaOpts;
 
     /**
@@ -545,6 +547,49 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
         return addHostControllerJavaOptions(args);
     }
 
+    /**
+     * Sets the garbage collector and runtime tuning profile of the host controller. The options of the profile are
+     * checked against the version and vendor of the JVM when the command is built. If the JVM options already select a
+     * garbage collector the profile is not applied.
+     *
+     * @param profile the profile or {@code null} to not use a profile
+     *
+     * @return the builder
+     */
+    public DomainCommandBuilder setGcProfile(final GcProfile profile) {
+        gcProfile = profile;
+        return this;
+    }
+
+    /**
+     * Returns the garbage collector and runtime tuning profile of the host controller.
+     *
+     * @return the profile or {@code null} if no profile is used
+     */
+    public GcProfile getGcProfile() {
+        return gcProfile;
+    }
+
+    /**
+     * Replaces the default {@code -Xms64m -Xmx512m} JVM arguments of the host controller with the
+     * {@linkplain Ergonomics#getHostControllerOptions() heap, metaspace and processor count options} computed from the
+     * container limits. The host controller only gets a small share of the memory, the heap percentages of the
+     * ergonomics are not used as the servers of the domain are separate processes sized by the host configuration.
+     * Options which are already set, for example an explicit {@code -Xmx}, are kept. Options added afterwards are added
+     * after the computed options and take precedence.
+     *
+     * @param ergonomics the ergonomics used to compute the options
+     *
+     * @return the builder
+     */
+    public DomainCommandBuilder applyErgonomics(final Ergonomics ergonomics) {
+        if (ergonomics == null) {
+            throw LauncherMessages.MESSAGES.nullParam("ergonomics");
+        }
+        ergonomics.applyHostController(hostControllerJavaOpts);
+        return this;
+    }
+
     /**
      * Returns the JVM arguments for the host controller.
      *
@@ -699,12 +744,19 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
         return serverJvm.getPath();
     }
 
+    @Override
+    List<Jvm> getJvms() {
+        // The server JVM is only passed to the host controller
+        return List.of(environment.getJvm(), hostControllerJvm);
+    }
+
     @Override
     public List<String> buildArguments() {
         final List<String> cmd = new ArrayList<>();
 
         // Process Controller
         cmd.add("-D[Process Controller]");
+        final int processControllerOptionsIndex = cmd.size();
         addSystemPropertyArg(cmd, HOME_DIR, getWildFlyHome());
 
         // PROCESS_CONTROLLER_JAVA_OPTS
@@ -712,7 +764,7 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
         if (environment.getJvm().isModular()) {
             cmd.addAll(DEFAULT_MODULAR_VM_ARGUMENTS);
             for (final String optionalModularArgument : OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
-                if (Jvm.isPackageAvailable(environment.getJvm().getPath(), optionalModularArgument)) {
+                if (environment.getJvm().isPackageAvailable(optionalModularArgument)) {
                     cmd.add(optionalModularArgument);
                 }
             }
@@ -723,6 +775,8 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
 
         cmd.add(getBootLogArgument("process-controller.log"));
         cmd.add(getLoggingPropertiesArgument("logging.properties"));
+        addClassDataSharing(cmd, processControllerOptionsIndex, environment.getJvm(), "process-controller");
+        addArgumentFile(cmd, processControllerOptionsIndex, environment.getJvm());
         cmd.add("-jar");
         cmd.add(getModulesJarName());
         if (useSecurityManager()) {
@@ -740,15 +794,17 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
 
         // Host Controller
         cmd.add("--");
+        final int hostControllerOptionsIndex = cmd.size();
         cmd.add(getBootLogArgument("host-controller.log"));
         cmd.add(getLoggingPropertiesArgument("logging.properties"));
 
         // HOST_CONTROLLER_JAVA_OPTS
         cmd.addAll(hostControllerJavaOpts.asList());
+        GcProfile.addOptions(gcProfile, hostControllerJvm, hostControllerJavaOpts.asList(), cmd);
         if (hostControllerJvm.isModular()) {
             cmd.addAll(DEFAULT_MODULAR_VM_ARGUMENTS);
             for (final String optionalModularArgument : OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
-                if (Jvm.isPackageAvailable(environment.getJvm().getPath(), optionalModularArgument)) {
+                if (hostControllerJvm.isPackageAvailable(optionalModularArgument)) {
                     cmd.add(optionalModularArgument);
                 }
             }
@@ -756,6 +812,10 @@ public class DomainCommandBuilder extends AbstractCommandBuilder<DomainCommandBu
         if (useSecurityManager() && hostControllerJvm.enhancedSecurityManagerAvailable()) {
             cmd.add(SECURITY_MANAGER_PROP_WITH_ALLOW_VALUE);
         }
+        addClassDataSharing(cmd, hostControllerOptionsIndex, hostControllerJvm, "host-controller");
+        // The process controller passes the host controller options to the java launcher of the host controller
+        // which expands the argument file
+        addArgumentFile(cmd, hostControllerOptionsIndex, hostControllerJvm);
 
         cmd.add("--");
         cmd.add("-default-jvm");
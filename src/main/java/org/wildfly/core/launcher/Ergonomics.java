@@ -0,0 +1,463 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * Computes the heap, metaspace and processor count options of a launched JVM from the memory and CPU limits of the
+ * container, instead of the fixed {@code -Xms64m -Xmx512m} defaults.
+ * <p>
+ * The limits are read from the cgroup v2 {@code memory.max} and {@code cpu.max} files, or from the cgroup v1
+ * {@code memory.limit_in_bytes}, {@code cpu.cfs_quota_us} and {@code cpu.cfs_period_us} files, in
+ * {@code /sys/fs/cgroup}. The launched process inherits the cgroup of this process, so the limits of this process are
+ * the limits of the launched process. If no memory limit is set the physical memory from {@code /proc/meminfo} is used.
+ * If no processor limit is set the {@code -XX:ActiveProcessorCount} option is not added.
+ * </p>
+ * <p>
+ * The physical memory is shared with every other process of the host, for example the other servers of a
+ * {@linkplain FleetLauncher fleet} or {@linkplain StandbyPool standby pool}. Without a container memory limit the
+ * maximum heap is therefore at most 2 GiB and the maximum metaspace at most 512 MiB, whatever the percentages. Set an
+ * explicit {@code -Xmx} to use more memory.
+ * </p>
+ * <p>
+ * By default the maximum heap is 50% of the memory limit, the initial heap 25% of the maximum heap and the maximum
+ * metaspace 10% of the memory limit. The heap is at least 64 MiB and the metaspace at least 96 MiB. A computed heap
+ * option is clamped to an explicitly set {@code -Xms} or {@code -Xmx}, and no heap options are added if the heap is
+ * sized with {@code -XX:MaxRAM} or {@code -XX:MaxRAMPercentage}.
+ * </p>
+ * <p>
+ * The host controller of a managed domain only manages the servers, which are separate processes sized by the host
+ * configuration. It uses a fixed policy instead of the percentages: the maximum heap is 10% of the memory limit
+ * between 64 MiB and 512 MiB, the initial heap 64 MiB and the maximum metaspace 10% of the memory limit between 96 MiB
+ * and 256 MiB.
+ * </p>
+ *
+ * <pre>
+ *     final StandaloneCommandBuilder builder = StandaloneCommandBuilder.of(wildflyHome)
+ *             .applyErgonomics(Ergonomics.detect().setMaxHeapPercentage(70));
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class Ergonomics {
+
+    private static final long MIB = 1024L * 1024L;
+    private static final long MIN_HEAP = 64L * MIB;
+    private static final long MIN_METASPACE = 96L * MIB;
+    private static final int HOST_CONTROLLER_PERCENTAGE = 10;
+    private static final long HOST_CONTROLLER_MAX_HEAP = 512L * MIB;
+    private static final long HOST_CONTROLLER_MAX_METASPACE = 256L * MIB;
+    // The limits used when the memory is the physical memory of the host rather than a container limit
+    private static final long UNCONTAINED_MAX_HEAP = 2048L * MIB;
+    private static final long UNCONTAINED_MAX_METASPACE = 512L * MIB;
+    // cgroup v1 reports no limit as a value close to Long.MAX_VALUE rounded down to the page size
+    private static final long UNLIMITED = 1L << 60;
+    private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+    private static final Path PROC_SELF_CGROUP = Path.of("/proc/self/cgroup");
+    private static final Path MEMINFO = Path.of("/proc/meminfo");
+    private static final String[] REPLACED_DEFAULTS = {
+            "-Xms64m",
+            "-Xmx512m",
+    };
+    private static final String[] INITIAL_HEAP_OPTIONS = {
+            "-Xms",
+            "-XX:InitialHeapSize=",
+    };
+    private static final String[] MAX_HEAP_OPTIONS = {
+            "-Xmx",
+            "-XX:MaxHeapSize=",
+    };
+    // Options which size the heap from the memory, an explicit heap size would override them
+    private static final String[] RAM_OPTIONS = {
+            "-XX:MaxRAM=",
+            "-XX:MaxRAMPercentage=",
+    };
+
+    private final long memoryLimit;
+    private final boolean contained;
+    private final int processorLimit;
+    private int maxHeapPercentage;
+    private int initialHeapPercentage;
+    private int maxMetaspacePercentage;
+
+    private Ergonomics(final long memoryLimit, final boolean contained, final int processorLimit) {
+        this.memoryLimit = memoryLimit;
+        this.contained = contained;
+        this.processorLimit = processorLimit;
+        maxHeapPercentage = 50;
+        initialHeapPercentage = 25;
+        maxMetaspacePercentage = 10;
+    }
+
+    /**
+     * Detects the memory and processor limits of the container this process is running in.
+     *
+     * @return the ergonomics for the detected limits
+     */
+    public static Ergonomics detect() {
+        return detect(CGROUP_ROOT, PROC_SELF_CGROUP, MEMINFO);
+    }
+
+    /**
+     * Detects the memory and processor limits from the files.
+     *
+     * @param cgroupRoot  the root of the cgroup file system
+     * @param procCgroup  the file describing the cgroup of the process
+     * @param meminfo     the file describing the physical memory
+     *
+     * @return the ergonomics for the detected limits
+     */
+    static Ergonomics detect(final Path cgroupRoot, final Path procCgroup, final Path meminfo) {
+        long memoryLimit = -1L;
+        int processorLimit = -1;
+        if (Files.exists(cgroupRoot.resolve("cgroup.controllers"))) {
+            // cgroup v2, the limits of the parent groups also apply
+            Path dir = cgroupRoot.resolve(cgroupV2Path(procCgroup)).normalize();
+            while (dir.startsWith(cgroupRoot)) {
+                memoryLimit = min(memoryLimit, readLimit(dir.resolve("memory.max")));
+                processorLimit = (int) min(processorLimit, readCpuMax(dir.resolve("cpu.max")));
+                if (dir.equals(cgroupRoot)) {
+                    break;
+                }
+                dir = dir.getParent();
+            }
+        } else {
+            memoryLimit = readLimit(cgroupRoot.resolve("memory").resolve("memory.limit_in_bytes"));
+            final Path cpu = cgroupRoot.resolve("cpu");
+            processorLimit = processors(readLimit(cpu.resolve("cpu.cfs_quota_us")),
+                    readLimit(cpu.resolve("cpu.cfs_period_us")));
+        }
+        final boolean contained = memoryLimit > 0L;
+        if (!contained) {
+            memoryLimit = readMemTotal(meminfo);
+        }
+        return new Ergonomics(memoryLimit, contained, processorLimit);
+    }
+
+    /**
+     * Sets the percentage of the memory limit used for the maximum heap, {@code -Xmx}. The default is 50%.
+     *
+     * @param percentage the percentage between 1 and 100
+     *
+     * @return this ergonomics
+     */
+    public Ergonomics setMaxHeapPercentage(final int percentage) {
+        maxHeapPercentage = checkPercentage("maxHeapPercentage", percentage);
+        return this;
+    }
+
+    /**
+     * Sets the percentage of the maximum heap used for the initial heap, {@code -Xms}. The default is 25%.
+     *
+     * @param percentage the percentage between 1 and 100
+     *
+     * @return this ergonomics
+     */
+    public Ergonomics setInitialHeapPercentage(final int percentage) {
+        initialHeapPercentage = checkPercentage("initialHeapPercentage", percentage);
+        return this;
+    }
+
+    /**
+     * Sets the percentage of the memory limit used for the maximum metaspace, {@code -XX:MaxMetaspaceSize}. The
+     * default is 10%.
+     *
+     * @param percentage the percentage between 1 and 100
+     *
+     * @return this ergonomics
+     */
+    public Ergonomics setMaxMetaspacePercentage(final int percentage) {
+        maxMetaspacePercentage = checkPercentage("maxMetaspacePercentage", percentage);
+        return this;
+    }
+
+    /**
+     * Returns the memory limit of the container or, if no limit is set, the physical memory.
+     *
+     * @return the memory in bytes or {@code -1} if the memory could not be determined
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Returns the number of processors the container is limited to, rounded up.
+     *
+     * @return the number of processors or {@code -1} if no limit is set
+     */
+    public int getProcessorLimit() {
+        return processorLimit;
+    }
+
+    /**
+     * Indicates whether the memory is limited by the container rather than being the physical memory of the host.
+     *
+     * @return {@code true} if a container memory limit is set
+     */
+    public boolean isMemoryLimited() {
+        return contained;
+    }
+
+    /**
+     * Returns the JVM options computed from the limits. If the memory could not be determined only the processor
+     * count option is returned. If no container memory limit is set the heap and metaspace are capped at 2 GiB and
+     * 512 MiB.
+     *
+     * @return the JVM options
+     */
+    public List<String> getOptions() {
+        if (memoryLimit <= 0L) {
+            return options(-1L, -1L, -1L);
+        }
+        long maxHeap = Math.max(MIN_HEAP, percentageOf(memoryLimit, maxHeapPercentage));
+        long maxMetaspace = Math.max(MIN_METASPACE, percentageOf(memoryLimit, maxMetaspacePercentage));
+        if (!contained) {
+            maxHeap = Math.min(maxHeap, UNCONTAINED_MAX_HEAP);
+            maxMetaspace = Math.min(maxMetaspace, UNCONTAINED_MAX_METASPACE);
+        }
+        return options(Math.max(MIN_HEAP, percentageOf(maxHeap, initialHeapPercentage)), maxHeap, maxMetaspace);
+    }
+
+    /**
+     * Returns the JVM options of the host controller of a managed domain computed from the limits. The percentages
+     * set on this ergonomics are not used.
+     *
+     * @return the JVM options
+     */
+    public List<String> getHostControllerOptions() {
+        if (memoryLimit <= 0L) {
+            return options(-1L, -1L, -1L);
+        }
+        final long share = percentageOf(memoryLimit, HOST_CONTROLLER_PERCENTAGE);
+        return options(MIN_HEAP, clamp(share, MIN_HEAP, HOST_CONTROLLER_MAX_HEAP),
+                clamp(share, MIN_METASPACE, HOST_CONTROLLER_MAX_METASPACE));
+    }
+
+    /**
+     * Replaces the default heap options with the computed options. Options already set, for example an explicit
+     * {@code -Xmx}, are kept and the computed heap options are clamped to them.
+     *
+     * @param javaOpts the JVM options to apply the computed options to
+     */
+    void apply(final Arguments javaOpts) {
+        apply(javaOpts, getOptions());
+    }
+
+    /**
+     * Replaces the default heap options of the host controller with the {@linkplain #getHostControllerOptions()
+     * computed options}.
+     *
+     * @param javaOpts the JVM options of the host controller
+     */
+    void applyHostController(final Arguments javaOpts) {
+        apply(javaOpts, getHostControllerOptions());
+    }
+
+    private void apply(final Arguments javaOpts, final List<String> options) {
+        if (memoryLimit > 0L) {
+            for (String replaced : REPLACED_DEFAULTS) {
+                javaOpts.remove(replaced);
+            }
+        }
+        final List<String> current = javaOpts.asList();
+        final boolean sizedFromMemory = find(current, RAM_OPTIONS) != null;
+        final long explicitInitialHeap = parseSize(find(current, INITIAL_HEAP_OPTIONS));
+        final long explicitMaxHeap = parseSize(find(current, MAX_HEAP_OPTIONS));
+        for (String option : options) {
+            final boolean initialHeap = option.startsWith("-Xms");
+            final boolean maxHeap = option.startsWith("-Xmx");
+            if (initialHeap || maxHeap) {
+                if (sizedFromMemory || (initialHeap ? explicitInitialHeap : explicitMaxHeap) >= 0L) {
+                    continue;
+                }
+                long size = parseSize(option);
+                // The initial heap must not be larger than the maximum heap
+                if (initialHeap && explicitMaxHeap >= 0L) {
+                    size = Math.min(size, explicitMaxHeap);
+                } else if (maxHeap && explicitInitialHeap >= 0L) {
+                    size = Math.max(size, explicitInitialHeap);
+                }
+                javaOpts.add(option.substring(0, 4) + formatSize(size));
+            } else {
+                final String prefix = option.substring(0, option.indexOf('=') + 1);
+                if (current.stream().noneMatch(arg -> arg.startsWith(prefix))) {
+                    javaOpts.add(option);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Ergonomics(memoryLimit=" + memoryLimit + ", processorLimit=" + processorLimit + ", options=" +
+                getOptions() + ")";
+    }
+
+    private static int checkPercentage(final String name, final int percentage) {
+        if (percentage < 1 || percentage > 100) {
+            throw LauncherMessages.MESSAGES.invalidPercentage(name, percentage);
+        }
+        return percentage;
+    }
+
+    private List<String> options(final long initialHeap, final long maxHeap, final long maxMetaspace) {
+        final List<String> options = new ArrayList<>();
+        if (maxHeap > 0L) {
+            options.add("-Xms" + initialHeap / MIB + "m");
+            options.add("-Xmx" + maxHeap / MIB + "m");
+            options.add("-XX:MaxMetaspaceSize=" + maxMetaspace / MIB + "m");
+        }
+        if (processorLimit > 0) {
+            options.add("-XX:ActiveProcessorCount=" + processorLimit);
+        }
+        return options;
+    }
+
+    private static String find(final List<String> options, final String[] prefixes) {
+        String result = null;
+        for (String option : options) {
+            for (String prefix : prefixes) {
+                if (option.startsWith(prefix)) {
+                    // The last option wins
+                    result = option.substring(prefix.length());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses a JVM memory size, for example {@code 512m}, or the value of a heap option, for example {@code -Xmx512m}.
+     *
+     * @param value the size or {@code null}
+     *
+     * @return the size in bytes or {@code -1} if the value is {@code null} or not a size
+     */
+    private static long parseSize(final String value) {
+        if (value == null) {
+            return -1L;
+        }
+        final String size = value.startsWith("-Xm") ? value.substring(4) : value;
+        if (size.isEmpty()) {
+            return -1L;
+        }
+        final long multiplier;
+        switch (Character.toLowerCase(size.charAt(size.length() - 1))) {
+            case 'k':
+                multiplier = 1024L;
+                break;
+            case 'm':
+                multiplier = MIB;
+                break;
+            case 'g':
+                multiplier = 1024L * MIB;
+                break;
+            case 't':
+                multiplier = 1024L * 1024L * MIB;
+                break;
+            default:
+                multiplier = 1L;
+        }
+        try {
+            return Long.parseLong(multiplier == 1L ? size : size.substring(0, size.length() - 1)) * multiplier;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static String formatSize(final long size) {
+        return size % MIB == 0L ? size / MIB + "m" : Long.toString(size);
+    }
+
+    private static long clamp(final long value, final long min, final long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long percentageOf(final long value, final int percentage) {
+        // Round down to a whole MiB
+        return value / MIB * percentage / 100L * MIB;
+    }
+
+    private static long min(final long current, final long value) {
+        if (value < 0L) {
+            return current;
+        }
+        return current < 0L ? value : Math.min(current, value);
+    }
+
+    private static String cgroupV2Path(final Path procCgroup) {
+        // The cgroup v2 entry has the format 0::/path
+        for (String line : readLines(procCgroup)) {
+            if (line.startsWith("0::")) {
+                final String path = line.substring(3);
+                return path.startsWith("/") ? path.substring(1) : path;
+            }
+        }
+        return "";
+    }
+
+    private static long readCpuMax(final Path file) {
+        // The format is "$MAX $PERIOD" where $MAX may be "max"
+        final List<String> lines = readLines(file);
+        if (lines.isEmpty()) {
+            return -1L;
+        }
+        final String[] values = lines.get(0).trim().split("\\s+");
+        if (values.length != 2) {
+            return -1L;
+        }
+        return processors(parse(values[0]), parse(values[1]));
+    }
+
+    private static int processors(final long quota, final long period) {
+        if (quota <= 0L || period <= 0L) {
+            return -1;
+        }
+        return (int) Math.max(1L, (quota + period - 1L) / period);
+    }
+
+    private static long readLimit(final Path file) {
+        final List<String> lines = readLines(file);
+        return lines.isEmpty() ? -1L : parse(lines.get(0).trim());
+    }
+
+    private static long readMemTotal(final Path meminfo) {
+        for (String line : readLines(meminfo)) {
+            if (line.startsWith("MemTotal:")) {
+                final String value = line.substring(9).trim();
+                final int space = value.indexOf(' ');
+                final long kib = parse(space < 0 ? value : value.substring(0, space));
+                return kib < 0L ? -1L : kib * 1024L;
+            }
+        }
+        return -1L;
+    }
+
+    private static long parse(final String value) {
+        try {
+            final long result = Long.parseLong(value);
+            return result >= UNLIMITED ? -1L : result;
+        } catch (NumberFormatException e) {
+            // For example "max" for no limit
+            return -1L;
+        }
+    }
+
+    private static List<String> readLines(final Path file) {
+        try {
+            return Files.readAllLines(file);
+        } catch (IOException | SecurityException e) {
+            return List.of();
+        }
+    }
+}
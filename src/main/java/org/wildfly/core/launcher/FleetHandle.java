@@ -0,0 +1,48 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A handle to processes launched by a {@link FleetLauncher}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class FleetHandle {
+
+    private final List<LaunchHandle> handles;
+    private final CompletableFuture<Void> allBooted;
+
+    FleetHandle(final List<LaunchHandle> handles) {
+        this.handles = handles;
+        allBooted = CompletableFuture.allOf(handles.stream()
+                .map(LaunchHandle::booted)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Returns the handles for each process in the order the launchers were added. The handle of a process which has
+     * not been launched yet is returned, its {@linkplain LaunchHandle#started() started future} is completed once the
+     * process has been launched.
+     *
+     * @return the handles for each process
+     */
+    public List<LaunchHandle> getHandles() {
+        return handles;
+    }
+
+    /**
+     * Returns a future which is completed once all the servers have booted. If any server failed to boot the future is
+     * completed exceptionally once all the other servers have booted or failed to boot.
+     *
+     * @return a future completed once all the servers have booted
+     */
+    public CompletableFuture<Void> allBooted() {
+        return allBooted.copy();
+    }
+}
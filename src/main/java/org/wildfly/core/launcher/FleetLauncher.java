@@ -0,0 +1,264 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * Launches a group of processes limiting the number of servers booting at the same time.
+ * <p>
+ * At most the {@linkplain #setMaxConcurrentBoots(int) maximum number of concurrent boots} are launched at once. The
+ * next process is launched when a booting server has booted or failed to boot. The launches are staggered, the time
+ * between launches is the average boot time of the servers already booted divided by the number of servers allowed
+ * to boot concurrently. If the load average of the host is higher than the number of available processors the number
+ * of servers allowed to boot concurrently is reduced in proportion.
+ * </p>
+ * <p>
+ * A server which has not booted within the {@linkplain #setBootTimeout(long, TimeUnit) boot timeout} is considered to
+ * have failed to boot, its {@linkplain LaunchHandle#booted() booted future} is completed exceptionally and the next
+ * process is launched. The process of the server is not stopped.
+ * </p>
+ *
+ * <pre>
+ *     final List&lt;Launcher&gt; launchers = ...;
+ *     final FleetHandle fleet = FleetLauncher.of(launchers)
+ *             .setMaxConcurrentBoots(4)
+ *             .launch();
+ *     fleet.allBooted().get(10, TimeUnit.MINUTES);
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class FleetLauncher {
+
+    // The delay between launches until a boot time has been observed
+    private static final long INITIAL_STAGGER_NANOS = TimeUnit.MILLISECONDS.toNanos(250L);
+    // The weight of the latest boot time in the average boot time
+    private static final double BOOT_TIME_WEIGHT = 0.3;
+    private static final Path LOAD_AVERAGE = Paths.get("/proc/loadavg");
+    private static final long DEFAULT_BOOT_TIMEOUT_MINUTES = 15L;
+
+    private static class SchedulerHolder {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "wildfly-launcher-fleet");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final List<Launcher> launchers;
+    private int maxConcurrentBoots;
+    private long bootTimeout;
+    private TimeUnit bootTimeoutUnit;
+
+    private FleetLauncher(final List<Launcher> launchers) {
+        this.launchers = launchers;
+        maxConcurrentBoots = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        bootTimeout = DEFAULT_BOOT_TIMEOUT_MINUTES;
+        bootTimeoutUnit = TimeUnit.MINUTES;
+    }
+
+    /**
+     * Creates a new fleet launcher for the launchers.
+     *
+     * @param launchers the launchers for each process
+     *
+     * @return the fleet launcher
+     */
+    public static FleetLauncher of(final Collection<Launcher> launchers) {
+        if (launchers == null) {
+            throw LauncherMessages.MESSAGES.nullParam("launchers");
+        }
+        return new FleetLauncher(List.copyOf(launchers));
+    }
+
+    /**
+     * Sets the maximum number of servers booting at the same time. The default is half the number of available
+     * processors.
+     *
+     * @param maxConcurrentBoots the maximum number of servers booting at the same time
+     *
+     * @return this fleet launcher
+     */
+    public FleetLauncher setMaxConcurrentBoots(final int maxConcurrentBoots) {
+        if (maxConcurrentBoots < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("maxConcurrentBoots", maxConcurrentBoots);
+        }
+        this.maxConcurrentBoots = maxConcurrentBoots;
+        return this;
+    }
+
+    /**
+     * Sets the time a server may take to boot before it is considered to have failed to boot and the next process is
+     * launched. The time includes preparing the launch, for example training the ahead-of-time cache. The default is
+     * 15 minutes.
+     *
+     * @param timeout the maximum time a server may take to boot or 0 to wait until the server boots or exits
+     * @param unit    the unit of the timeout
+     *
+     * @return this fleet launcher
+     */
+    public FleetLauncher setBootTimeout(final long timeout, final TimeUnit unit) {
+        if (timeout < 0L) {
+            throw LauncherMessages.MESSAGES.negative("timeout", timeout);
+        }
+        if (unit == null) {
+            throw LauncherMessages.MESSAGES.nullParam("unit");
+        }
+        bootTimeout = timeout;
+        bootTimeoutUnit = unit;
+        return this;
+    }
+
+    /**
+     * Launches the processes in the background.
+     *
+     * @return the handle for the processes
+     */
+    public FleetHandle launch() {
+        final List<LaunchHandle> handles = new ArrayList<>(launchers.size());
+        final Deque<Pending> pending = new ArrayDeque<>(launchers.size());
+        for (Launcher launcher : launchers) {
+            final LaunchHandle handle = new LaunchHandle();
+            handles.add(handle);
+            pending.add(new Pending(launcher, handle));
+        }
+        new Dispatcher(pending, maxConcurrentBoots, bootTimeout, bootTimeoutUnit).dispatch();
+        return new FleetHandle(Collections.unmodifiableList(handles));
+    }
+
+    /**
+     * Reads the one minute load average of the host.
+     *
+     * @return the load average or a negative value if the load average is not available
+     */
+    private static double loadAverage() {
+        try {
+            final String content = new String(Files.readAllBytes(LOAD_AVERAGE), StandardCharsets.US_ASCII);
+            final int end = content.indexOf(' ');
+            return Double.parseDouble(end > 0 ? content.substring(0, end) : content.trim());
+        } catch (IOException | NumberFormatException | SecurityException ignore) {
+            return -1.0;
+        }
+    }
+
+    private static class Pending {
+        final Launcher launcher;
+        final LaunchHandle handle;
+
+        private Pending(final Launcher launcher, final LaunchHandle handle) {
+            this.launcher = launcher;
+            this.handle = handle;
+        }
+    }
+
+    private static class Dispatcher {
+        private final Deque<Pending> pending;
+        private final int maxConcurrentBoots;
+        private final long bootTimeout;
+        private final TimeUnit bootTimeoutUnit;
+        private final int processors;
+        private int booting;
+        private long lastLaunch;
+        private double averageBootNanos;
+        private boolean scheduled;
+
+        private Dispatcher(final Deque<Pending> pending, final int maxConcurrentBoots, final long bootTimeout,
+                           final TimeUnit bootTimeoutUnit) {
+            this.pending = pending;
+            this.maxConcurrentBoots = maxConcurrentBoots;
+            this.bootTimeout = bootTimeout;
+            this.bootTimeoutUnit = bootTimeoutUnit;
+            processors = Runtime.getRuntime().availableProcessors();
+            averageBootNanos = -1.0;
+        }
+
+        void dispatch() {
+            // Building the commands may take a while, launch the processes once the monitor has been released
+            final List<Pending> launches = new ArrayList<>();
+            final long now = System.nanoTime();
+            synchronized (this) {
+                scheduled = false;
+                int limit;
+                while (!pending.isEmpty() && booting < (limit = concurrencyLimit())) {
+                    final long delay = booting == 0 ? 0L : (lastLaunch + staggerNanos(limit)) - now;
+                    if (delay > 0L) {
+                        scheduled = true;
+                        SchedulerHolder.SCHEDULER.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+                        break;
+                    }
+                    launches.add(pending.poll());
+                    booting++;
+                    lastLaunch = now;
+                }
+            }
+            for (Pending next : launches) {
+                try {
+                    next.launcher.launchAsync(next.handle);
+                } catch (RuntimeException e) {
+                    next.handle.fail(e);
+                }
+                final ScheduledFuture<?> timeout = bootTimeout == 0L ? null : SchedulerHolder.SCHEDULER.schedule(
+                        () -> next.handle.fail(LauncherMessages.MESSAGES.bootTimeout(bootTimeout, bootTimeoutUnit)),
+                        bootTimeout, bootTimeoutUnit);
+                // Complete on the scheduler so a handle which failed immediately does not re-enter this method
+                next.handle.booted().whenCompleteAsync((process, error) -> {
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                    bootComplete(now, error == null);
+                }, SchedulerHolder.SCHEDULER);
+            }
+        }
+
+        private void bootComplete(final long launched, final boolean booted) {
+            synchronized (this) {
+                booting--;
+                if (booted) {
+                    final long bootNanos = System.nanoTime() - launched;
+                    averageBootNanos = averageBootNanos < 0 ? bootNanos :
+                            (BOOT_TIME_WEIGHT * bootNanos) + ((1.0 - BOOT_TIME_WEIGHT) * averageBootNanos);
+                }
+                if (scheduled) {
+                    return;
+                }
+            }
+            dispatch();
+        }
+
+        private int concurrencyLimit() {
+            final double load = loadAverage();
+            if (load > processors) {
+                // The host is overloaded, reduce the number of servers booting in proportion
+                return Math.max(1, (int) (maxConcurrentBoots * (processors / load)));
+            }
+            return maxConcurrentBoots;
+        }
+
+        private long staggerNanos(final int limit) {
+            if (averageBootNanos < 0) {
+                return INITIAL_STAGGER_NANOS;
+            }
+            return (long) (averageBootNanos / limit);
+        }
+    }
+}
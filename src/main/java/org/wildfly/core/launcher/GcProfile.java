@@ -0,0 +1,151 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Named garbage collector and runtime tuning profiles. A profile expands to JVM options which are supported by the
+ * version and vendor of the target JVM. Options not supported by the JVM are dropped or replaced with the
+ * closest supported options so the process does not fail to start.
+ * <p>
+ * If the JVM options already select a garbage collector, for example {@code -XX:+UseG1GC}, the profile is not applied.
+ * Options of the profile which are already set in the JVM options, for example {@code -XX:MaxGCPauseMillis}, are not
+ * added so the JVM options take precedence. The JVM is launched once to check it accepts the options of the profile,
+ * if it does not, for example as the collector is not included in the build, the G1 collector is used instead.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public enum GcProfile {
+
+    /**
+     * Maximizes throughput with the Parallel collector, {@code -XX:+UseParallelGC}.
+     */
+    THROUGHPUT {
+        @Override
+        void addOptions(final Jvm jvm, final List<String> options) {
+            options.add("-XX:+UseParallelGC");
+        }
+    },
+
+    /**
+     * Minimizes pause times. Generational ZGC is used on Java 21 and later. On Java 15 to 20 Shenandoah is used if the
+     * vendor ships it, otherwise ZGC. Earlier versions use G1 with a 50 millisecond pause target.
+     */
+    LOW_LATENCY {
+        @Override
+        void addOptions(final Jvm jvm, final List<String> options) {
+            final int featureVersion = jvm.getFeatureVersion();
+            if (featureVersion >= 21) {
+                options.add("-XX:+UseZGC");
+                // ZGC is generational by default from Java 23 and the option is obsolete from Java 24
+                if (featureVersion < 23) {
+                    options.add("-XX:+ZGenerational");
+                }
+            } else if (featureVersion >= 15) {
+                options.add(supportsShenandoah(jvm) ? "-XX:+UseShenandoahGC" : "-XX:+UseZGC");
+            } else {
+                options.add("-XX:+UseG1GC");
+                options.add("-XX:MaxGCPauseMillis=50");
+            }
+        }
+    },
+
+    /**
+     * Minimizes the memory used with the Serial collector, {@code -XX:+UseSerialGC}. Compact object headers are
+     * enabled on Java 24 and later.
+     */
+    SMALL_FOOTPRINT {
+        @Override
+        void addOptions(final Jvm jvm, final List<String> options) {
+            options.add("-XX:+UseSerialGC");
+            final int featureVersion = jvm.getFeatureVersion();
+            if (featureVersion >= 24) {
+                // Compact object headers are experimental in Java 24 and a product option from Java 25
+                if (featureVersion == 24) {
+                    options.add("-XX:+UnlockExperimentalVMOptions");
+                }
+                options.add("-XX:+UseCompactObjectHeaders");
+            }
+        }
+    },
+
+    /**
+     * Balances throughput and pause times with the G1 collector and a 200 millisecond pause target.
+     */
+    BALANCED {
+        @Override
+        void addOptions(final Jvm jvm, final List<String> options) {
+            options.add("-XX:+UseG1GC");
+            options.add("-XX:MaxGCPauseMillis=200");
+        }
+    },
+    ;
+
+    private static final Pattern COLLECTOR_OPTION = Pattern.compile("-XX:\\+Use\\w*GC");
+    private static final List<String> FALLBACK_OPTIONS = List.of("-XX:+UseG1GC");
+
+    /**
+     * Returns the JVM options of the profile supported by the JVM. If the JVM does not accept the options the G1
+     * collector is used.
+     *
+     * @param jvm the JVM the options are for
+     *
+     * @return the JVM options
+     */
+    List<String> getOptions(final Jvm jvm) {
+        final List<String> options = new ArrayList<>();
+        addOptions(jvm, options);
+        return jvm.isAccepted(options) ? options : FALLBACK_OPTIONS;
+    }
+
+    abstract void addOptions(Jvm jvm, List<String> options);
+
+    /**
+     * Adds the options of the profile to the command unless the JVM options already select a garbage collector.
+     * Options already set in the JVM options are not added.
+     *
+     * @param profile     the profile or {@code null} if no profile is used
+     * @param jvm         the JVM the options are for
+     * @param javaOptions the JVM options set on the builder
+     * @param cmd         the command to add the options to
+     */
+    static void addOptions(final GcProfile profile, final Jvm jvm, final Collection<String> javaOptions,
+                           final List<String> cmd) {
+        if (profile == null || javaOptions.stream().anyMatch(option -> COLLECTOR_OPTION.matcher(option).matches())) {
+            return;
+        }
+        final Set<String> userOptions = javaOptions.stream()
+                .map(GcProfile::optionName)
+                .collect(Collectors.toSet());
+        for (String option : profile.getOptions(jvm)) {
+            if (!userOptions.contains(optionName(option))) {
+                cmd.add(option);
+            }
+        }
+    }
+
+    private static String optionName(final String option) {
+        if (!option.startsWith("-XX:")) {
+            return option;
+        }
+        final int end = option.indexOf('=');
+        final String name = option.substring(4, end < 0 ? option.length() : end);
+        return name.startsWith("+") || name.startsWith("-") ? name.substring(1) : name;
+    }
+
+    private static boolean supportsShenandoah(final Jvm jvm) {
+        // Shenandoah is excluded from the builds of Oracle
+        final String vendor = jvm.getVendor();
+        return vendor != null && !vendor.startsWith("Oracle");
+    }
+}
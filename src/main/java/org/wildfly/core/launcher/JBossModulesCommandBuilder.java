@@ -6,10 +6,12 @@ package org.wildfly.core.launcher;
 
 import static org.wildfly.core.launcher.logger.LauncherMessages.MESSAGES;
 
+import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.wildfly.core.launcher.Arguments.Argument;
 
@@ -94,6 +96,8 @@ public class JBossModulesCommandBuilder implements CommandBuilder {
     private boolean useSecMgr;
     private boolean addModuleAgent;
     private final Collection<String> moduleOpts;
+    private Path argumentFileDir;
+    private Path classDataSharingDir;
 
     /**
      * Creates a command builder for a launching JBoss Modules module.
@@ -172,7 +176,8 @@ public class JBossModulesCommandBuilder implements CommandBuilder {
      * @return the builder
      */
     public JBossModulesCommandBuilder setUseSecurityManager(final boolean useSecMgr) {
-        if (environment.getJvm().isSecurityManagerSupported()) {
+        // Only check the JVM when enabling the security manager as the check may require probing the JVM
+        if (!useSecMgr || environment.getJvm().isSecurityManagerSupported()) {
             this.useSecMgr = useSecMgr;
             return this;
         }
@@ -611,6 +616,80 @@ public class JBossModulesCommandBuilder implements CommandBuilder {
         return this;
     }
 
+    /**
+     * Sets the directory used to write the JVM options to a Java {@code @argfile}. If set, the JVM options are written
+     * to a file named after a hash of its contents and the command contains a single {@code @argfile} argument in place
+     * of the JVM options. Launches with identical JVM options share the same file. Argument files which have not been
+     * used for a day are deleted when a new file is written.
+     * <p>
+     * Argument files are only used if the JVM is a modular JVM as they are not supported by Java 8.
+     * </p>
+     *
+     * @param dir the directory for the argument files or {@code null} to add the JVM options to the command
+     *
+     * @return the builder
+     */
+    public JBossModulesCommandBuilder setArgumentFileDirectory(final Path dir) {
+        argumentFileDir = dir == null ? null : dir.toAbsolutePath().normalize();
+        return this;
+    }
+
+    /**
+     * Returns the directory used to write the JVM options to a Java {@code @argfile}.
+     *
+     * @return the directory or {@code null} if the JVM options are added to the command
+     */
+    public Path getArgumentFileDirectory() {
+        return argumentFileDir;
+    }
+
+    /**
+     * Sets the directory used to store the class data sharing (AppCDS) archives. If set, the first launch records the
+     * classes loaded to an archive when the process exits and following launches map the archive to start faster.
+     * <p>
+     * An archive is only reused with the same JDK build, WildFly home directory, module path and JVM options. If any
+     * of these or the {@code jboss-modules.jar} change, a new archive is recorded and the stale archive is deleted.
+     * Class data sharing archives require Java 13 or later, the directory is ignored for earlier versions.
+     * </p>
+     *
+     * @param dir the directory for the archives or {@code null} to not use class data sharing
+     *
+     * @return the builder
+     */
+    public JBossModulesCommandBuilder setClassDataSharingDirectory(final Path dir) {
+        classDataSharingDir = dir == null ? null : dir.toAbsolutePath().normalize();
+        return this;
+    }
+
+    /**
+     * Returns the directory used to store the class data sharing archives.
+     *
+     * @return the directory or {@code null} if class data sharing is not used
+     */
+    public Path getClassDataSharingDirectory() {
+        return classDataSharingDir;
+    }
+
+    /**
+     * Starts resolving the capabilities of the configured Java homes in the background. The capabilities are
+     * otherwise resolved when the command is {@linkplain #build() built}. If several Java homes are configured they are
+     * resolved concurrently, so the command can be built in about the time it takes to resolve one Java home.
+     *
+     * @return a future completed with this builder once the Java homes have been resolved
+     */
+    public CompletableFuture<? extends JBossModulesCommandBuilder> resolveJavaHomesAsync() {
+        return Jvm.resolveAll(getJvms()).thenApply(ignore -> this);
+    }
+
+    /**
+     * Returns the JVMs whose capabilities are required to build the command.
+     *
+     * @return the JVMs
+     */
+    List<Jvm> getJvms() {
+        return List.of(environment.getJvm());
+    }
+
     @Override
     public List<String> buildArguments() {
         final List<String> cmd = new ArrayList<>();
@@ -622,7 +701,7 @@ public class JBossModulesCommandBuilder implements CommandBuilder {
         if (environment.getJvm().isModular()) {
             cmd.addAll(DEFAULT_MODULAR_VM_ARGUMENTS);
             for (final String optionalModularArgument : OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
-                if (Jvm.isPackageAvailable(environment.getJvm().getPath(), optionalModularArgument)) {
+                if (environment.getJvm().isPackageAvailable(optionalModularArgument)) {
                     cmd.add(optionalModularArgument);
                 }
             }
@@ -637,6 +716,8 @@ public class JBossModulesCommandBuilder implements CommandBuilder {
         if (modulesMetricsArg != null) {
             cmd.add(modulesMetricsArg);
         }
+        addClassDataSharing(cmd, 0, environment.getJvm(), "modules");
+        addArgumentFile(cmd, 0, environment.getJvm());
         cmd.add("-jar");
         cmd.add(getModulesJarName());
         if (useSecurityManager()) {
@@ -660,6 +741,60 @@ public class JBossModulesCommandBuilder implements CommandBuilder {
         return cmd;
     }
 
+    /**
+     * Replaces the JVM options from the {@code fromIndex} to the end of the command with an {@code @argfile} if an
+     * {@linkplain #setArgumentFileDirectory(Path) argument file directory} is set and the JVM supports argument files.
+     *
+     * @param cmd       the command
+     * @param fromIndex the index of the first JVM option
+     * @param jvm       the JVM the options are for
+     */
+    void addArgumentFile(final List<String> cmd, final int fromIndex, final Jvm jvm) {
+        if (argumentFileDir != null && jvm.isModular()) {
+            ArgumentFile.replace(argumentFileDir, cmd, fromIndex);
+        }
+    }
+
+    /**
+     * Adds the options to use a class data sharing archive to the end of the command if a
+     * {@linkplain #setClassDataSharingDirectory(Path) class data sharing directory} is set.
+     *
+     * @param cmd       the command
+     * @param fromIndex the index of the first JVM option
+     * @param jvm       the JVM the options are for
+     * @param name      the name of the kind of process the archive is for
+     */
+    void addClassDataSharing(final List<String> cmd, final int fromIndex, final Jvm jvm, final String name) {
+        if (classDataSharingDir != null) {
+            ClassDataSharing.addOptions(classDataSharingDir, name, jvm, cmd, fromIndex, getCacheLayout(),
+                    getCacheSources());
+        }
+    }
+
+    /**
+     * Returns the values identifying the installation for the files generated to start the process faster.
+     *
+     * @return the WildFly home directory and module path
+     */
+    List<String> getCacheLayout() {
+        return List.of(getWildFlyHome().toString(), getModulePaths());
+    }
+
+    /**
+     * Returns the files the classes are loaded from which invalidate the files generated to start the process faster
+     * when changed.
+     *
+     * @return the {@code jboss-modules.jar} and the module directories
+     */
+    List<Path> getCacheSources() {
+        final List<Path> sources = new ArrayList<>();
+        sources.add(environment.getModuleJar());
+        for (String dir : getModulePaths().split(File.pathSeparator)) {
+            sources.add(Path.of(dir));
+        }
+        return sources;
+    }
+
     protected void setSingleServerArg(final String key, final String value) {
         serverArgs.set(key, value);
     }
@@ -0,0 +1,325 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * A registry of the JDKs installed on the local machine.
+ * <p>
+ * The {@link #discover() default roots} are the {@code java.home} of the current JVM, {@code $JAVA_HOME},
+ * {@code /usr/lib/jvm}, {@code /usr/java}, {@code /opt/java}, the SDKMAN, asdf and IDE download directories in the
+ * users home directory and any directories listed in the {@value #ROOTS_PROPERTY} system property. A root is either
+ * a Java home itself or a directory containing Java homes.
+ * </p>
+ * <p>
+ * The capabilities of every JDK found are resolved concurrently when the registry is created and cached, so a JDK
+ * selected from the registry can be passed to a builder without waiting for it to be resolved again.
+ * </p>
+ *
+ * <pre>
+ *     final JdkRegistry registry = JdkRegistry.discover();
+ *     final StandaloneCommandBuilder builder = StandaloneCommandBuilder.of(wildflyHome)
+ *             .setJavaHome(registry.find(21).orElseThrow().getPath());
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class JdkRegistry {
+
+    /**
+     * The system property used to define additional directories, separated by the
+     * {@linkplain File#pathSeparator path separator}, to search for JDKs.
+     */
+    public static final String ROOTS_PROPERTY = "wildfly.launcher.jdk.roots";
+
+    private static final Comparator<Jdk> ORDER = Comparator.comparingInt(Jdk::getFeatureVersion).reversed()
+            .thenComparing(jdk -> jdk.getPath().toString());
+
+    private final List<Jdk> jdks;
+
+    private JdkRegistry(final List<Jdk> jdks) {
+        this.jdks = jdks;
+    }
+
+    /**
+     * Discovers the JDKs in the default roots.
+     *
+     * @return the registry of the JDKs found
+     */
+    public static JdkRegistry discover() {
+        return discover(Collections.emptyList());
+    }
+
+    /**
+     * Discovers the JDKs in the default roots and the additional roots.
+     *
+     * @param roots additional Java homes or directories containing Java homes
+     *
+     * @return the registry of the JDKs found
+     */
+    public static JdkRegistry discover(final Collection<Path> roots) {
+        if (roots == null) {
+            throw LauncherMessages.MESSAGES.nullParam("roots");
+        }
+        final Set<Path> allRoots = new LinkedHashSet<>(defaultRoots());
+        allRoots.addAll(roots);
+        return of(allRoots);
+    }
+
+    /**
+     * Creates a registry of the JDKs found only in the roots, the default roots are not searched.
+     *
+     * @param roots the Java homes or directories containing Java homes
+     *
+     * @return the registry of the JDKs found
+     */
+    public static JdkRegistry of(final Collection<Path> roots) {
+        if (roots == null) {
+            throw LauncherMessages.MESSAGES.nullParam("roots");
+        }
+        final Set<Path> javaHomes = new LinkedHashSet<>();
+        for (Path root : roots) {
+            if (isJavaHome(root)) {
+                addJavaHome(javaHomes, root);
+            } else if (Files.isDirectory(root)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+                    for (Path dir : stream) {
+                        if (isJavaHome(dir)) {
+                            addJavaHome(javaHomes, dir);
+                        }
+                    }
+                } catch (IOException | SecurityException ignore) {
+                    // Directories which cannot be read do not contain any JDKs we can use
+                }
+            }
+        }
+        // Resolve each JDK concurrently, at most this takes as long as resolving the slowest JDK
+        final List<CompletableFuture<Jvm>> resolving = new ArrayList<>(javaHomes.size());
+        for (Path javaHome : javaHomes) {
+            resolving.add(Jvm.of(javaHome).resolveAsync());
+        }
+        final List<Jdk> jdks = new ArrayList<>(resolving.size());
+        for (CompletableFuture<Jvm> future : resolving) {
+            try {
+                final Jvm jvm = future.join();
+                if (jvm.getFeatureVersion() > 0) {
+                    jdks.add(new Jdk(jvm));
+                }
+            } catch (CompletionException ignore) {
+                // The JDK could not be resolved, exclude it from the registry
+            }
+        }
+        jdks.sort(ORDER);
+        return new JdkRegistry(Collections.unmodifiableList(jdks));
+    }
+
+    /**
+     * Returns all the JDKs in the registry ordered from the highest to the lowest feature version.
+     *
+     * @return the JDKs
+     */
+    public List<Jdk> getJdks() {
+        return jdks;
+    }
+
+    /**
+     * Finds the JDK with the feature version. If more than one JDK has the same feature version the JDK with the
+     * highest runtime version is returned.
+     *
+     * @param featureVersion the feature version, for example {@code 21}
+     *
+     * @return the JDK or an empty optional if no JDK has the feature version
+     */
+    public Optional<Jdk> find(final int featureVersion) {
+        return find(jdk -> jdk.getFeatureVersion() == featureVersion);
+    }
+
+    /**
+     * Finds the first JDK which matches the filter. JDKs are tested from the highest to the lowest feature version.
+     *
+     * @param filter the filter to test the JDKs with
+     *
+     * @return the first matching JDK or an empty optional if no JDK matches
+     */
+    public Optional<Jdk> find(final Predicate<Jdk> filter) {
+        if (filter == null) {
+            throw LauncherMessages.MESSAGES.nullParam("filter");
+        }
+        Jdk result = null;
+        for (Jdk jdk : jdks) {
+            if (filter.test(jdk) && (result == null || (result.getFeatureVersion() == jdk.getFeatureVersion() &&
+                    compareRuntimeVersions(jdk.getRuntimeVersion(), result.getRuntimeVersion()) > 0))) {
+                result = jdk;
+            } else if (result != null && result.getFeatureVersion() != jdk.getFeatureVersion()) {
+                break;
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    @Override
+    public String toString() {
+        return "JdkRegistry" + jdks;
+    }
+
+    private static List<Path> defaultRoots() {
+        final List<Path> roots = new ArrayList<>();
+        roots.add(Paths.get(System.getProperty("java.home")));
+        addRoot(roots, System.getenv("JAVA_HOME"));
+        roots.add(Paths.get("/usr/lib/jvm"));
+        roots.add(Paths.get("/usr/java"));
+        roots.add(Paths.get("/opt/java"));
+        final String sdkmanDir = System.getenv("SDKMAN_DIR");
+        if (sdkmanDir != null && !sdkmanDir.isBlank()) {
+            roots.add(Paths.get(sdkmanDir, "candidates", "java"));
+        }
+        final String asdfDir = System.getenv("ASDF_DATA_DIR");
+        if (asdfDir != null && !asdfDir.isBlank()) {
+            roots.add(Paths.get(asdfDir, "installs", "java"));
+        }
+        final String userHome = System.getProperty("user.home");
+        if (userHome != null && !userHome.isBlank()) {
+            roots.add(Paths.get(userHome, ".sdkman", "candidates", "java"));
+            roots.add(Paths.get(userHome, ".asdf", "installs", "java"));
+            roots.add(Paths.get(userHome, ".jdks"));
+        }
+        final String additionalRoots = System.getProperty(ROOTS_PROPERTY);
+        if (additionalRoots != null) {
+            for (String root : additionalRoots.split(File.pathSeparator)) {
+                addRoot(roots, root);
+            }
+        }
+        return roots;
+    }
+
+    private static void addRoot(final List<Path> roots, final String root) {
+        if (root != null && !root.isBlank()) {
+            roots.add(Paths.get(root.trim()));
+        }
+    }
+
+    private static void addJavaHome(final Set<Path> javaHomes, final Path javaHome) {
+        try {
+            // Links, such as /usr/lib/jvm/default-java or the SDKMAN current link, should not be resolved twice
+            javaHomes.add(javaHome.toRealPath());
+        } catch (IOException | SecurityException ignore) {
+        }
+    }
+
+    private static boolean isJavaHome(final Path dir) {
+        return Files.isRegularFile(dir.resolve("bin").resolve(Environment.isWindows() ? "java.exe" : "java"));
+    }
+
+    private static int compareRuntimeVersions(final String v1, final String v2) {
+        if (v1 == null || v2 == null) {
+            return v1 == null ? (v2 == null ? 0 : -1) : 1;
+        }
+        final String[] parts1 = v1.split("[.+\\-_]");
+        final String[] parts2 = v2.split("[.+\\-_]");
+        for (int i = 0; i < Math.min(parts1.length, parts2.length); i++) {
+            int result;
+            try {
+                result = Integer.compare(Integer.parseInt(parts1[i]), Integer.parseInt(parts2[i]));
+            } catch (NumberFormatException e) {
+                result = parts1[i].compareTo(parts2[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(parts1.length, parts2.length);
+    }
+
+    /**
+     * A JDK found in the registry.
+     */
+    public static final class Jdk {
+        private final Jvm jvm;
+
+        private Jdk(final Jvm jvm) {
+            this.jvm = jvm;
+        }
+
+        /**
+         * The path to the Java home of this JDK which can be passed to a builders {@code setJavaHome} method.
+         *
+         * @return the Java home
+         */
+        public Path getPath() {
+            return jvm.getPath();
+        }
+
+        /**
+         * Returns the feature version of this JDK, for example {@code 21}.
+         *
+         * @return the feature version
+         */
+        public int getFeatureVersion() {
+            return jvm.getFeatureVersion();
+        }
+
+        /**
+         * Returns the full runtime version of this JDK including the build, for example {@code 21.0.5+11-LTS}.
+         *
+         * @return the runtime version or {@code null} if the version could not be determined
+         */
+        public String getRuntimeVersion() {
+            return jvm.getRuntimeVersion();
+        }
+
+        /**
+         * Returns the vendor of this JDK.
+         *
+         * @return the vendor or {@code null} if the vendor could not be determined
+         */
+        public String getVendor() {
+            return jvm.getVendor();
+        }
+
+        /**
+         * Indicates whether or not this is a modular JDK.
+         *
+         * @return {@code true} if this is a modular JDK, otherwise {@code false}
+         */
+        public boolean isModular() {
+            return jvm.isModular();
+        }
+
+        /**
+         * Indicates if the security manager is supported for this JDK.
+         *
+         * @return {@code true} if this is a security manager is supported in this JDK, otherwise {@code false}
+         */
+        public boolean isSecurityManagerSupported() {
+            return jvm.isSecurityManagerSupported();
+        }
+
+        @Override
+        public String toString() {
+            return "Jdk[featureVersion=" + getFeatureVersion() + ", runtimeVersion=" + getRuntimeVersion() +
+                    ", vendor=" + getVendor() + ", path=" + getPath() + "]";
+        }
+    }
+}
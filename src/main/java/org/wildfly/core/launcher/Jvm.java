@@ -5,17 +5,23 @@
 
 package org.wildfly.core.launcher;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.wildfly.core.launcher.logger.LauncherMessages;
 
@@ -41,18 +47,34 @@ class Jvm {
         JAVA_HOME = Paths.get(javaHome);
     }
 
-    private static final Jvm DEFAULT = new Jvm(JAVA_HOME, true, SUPPORTS_SECURITY_MANGER, ENHANCED_SECURITY_MANAGER);
+    private static final Jvm DEFAULT = new Jvm(JAVA_HOME, currentCapabilities());
+
+    // The time the result of a probe which could not determine the capabilities is used before probing again
+    private static final long PROBE_RETRY_SECONDS = 60L;
+
+    private static final Map<ArgumentCheck, CompletableFuture<Boolean>> ARGUMENT_CHECKS = new ConcurrentHashMap<>();
+
+    private static class ResolverHolder {
+        static final Executor EXECUTOR;
+
+        static {
+            // Resolution mostly waits for probe processes, a few threads are enough to resolve several JVMs at once
+            final int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new ResolverThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            EXECUTOR = executor;
+        }
+    }
 
     private final Path path;
-    private final boolean isModular;
-    private final boolean isSecurityManagerSupported;
-    private final boolean enhancedSecurityManager;
+    private volatile JvmCapabilities capabilities;
+    private volatile JvmCapabilities incompleteCapabilities;
+    private volatile long retryProbeAfter;
 
-    private Jvm(final Path path, final boolean isModular, final boolean isSecurityManagerSupported, final boolean enhancedSecurityManager) {
+    private Jvm(final Path path, final JvmCapabilities capabilities) {
         this.path = path;
-        this.isModular = isModular;
-        this.isSecurityManagerSupported = isSecurityManagerSupported;
-        this.enhancedSecurityManager = enhancedSecurityManager;
+        this.capabilities = capabilities;
     }
 
     /**
@@ -80,6 +102,10 @@ class Jvm {
 
     /**
      * Creates a new JVM. If the {@code javaHome} is {@code null} the {@linkplain #current() current} JVM is returned.
+     * <p>
+     * The capabilities of the JVM are not resolved until one of them is first queried. They are then looked up in the
+     * {@link JvmCache} and only probed if there is no valid entry.
+     * </p>
      *
      * @param javaHome the path to the Java home
      *
@@ -89,8 +115,7 @@ class Jvm {
         if (javaHome == null || javaHome.equals(JAVA_HOME)) {
             return DEFAULT;
         }
-        final Path path = validateJavaHome(javaHome);
-        return new Jvm(path, isModularJavaHome(javaHome), isSecurityManagerSupported(javaHome), hasEnhancedSecurityManager(javaHome));
+        return new Jvm(validateJavaHome(javaHome), null);
     }
 
     /**
@@ -111,13 +136,40 @@ class Jvm {
         return path;
     }
 
+    /**
+     * Returns the feature version of this JVM, for example {@code 21}.
+     *
+     * @return the feature version or -1 if the version could not be determined
+     */
+    public int getFeatureVersion() {
+        return capabilities().getFeatureVersion();
+    }
+
+    /**
+     * Returns the full runtime version of this JVM including the build, for example {@code 21.0.5+11-LTS}.
+     *
+     * @return the runtime version or {@code null} if the version could not be determined
+     */
+    public String getRuntimeVersion() {
+        return capabilities().getRuntimeVersion();
+    }
+
+    /**
+     * Returns the vendor of this JVM.
+     *
+     * @return the vendor or {@code null} if the vendor could not be determined
+     */
+    public String getVendor() {
+        return capabilities().getVendor();
+    }
+
     /**
      * Indicates whether or not this is a modular JVM.
      *
      * @return {@code true} if this is a modular JVM, otherwise {@code false}
      */
     public boolean isModular() {
-        return isModular;
+        return capabilities().isModular();
     }
 
     /**
@@ -126,7 +178,7 @@ class Jvm {
      * @return {@code true} if this is a security manager is supported in this JVM, otherwise {@code false}
      */
     public boolean isSecurityManagerSupported() {
-        return isSecurityManagerSupported;
+        return capabilities().isSecurityManagerSupported();
     }
 
     /**
@@ -135,191 +187,270 @@ class Jvm {
      * @return {@code true} if this is a modular JVM with enhanced SecurityManager, otherwise {@code false}
      */
     public boolean enhancedSecurityManagerAvailable() {
-        return enhancedSecurityManager;
-    }
-
-    private static boolean isModularJavaHome(final Path javaHome) {
-        final Path jmodsDir = javaHome.resolve("jmods");
-        // If the jmods directory exists we can safely assume this is a modular JDK, note even in a modular JDK this
-        // may not exist.
-        if (Files.isDirectory(jmodsDir)) {
-            return true;
-        }
-        // Next check for a $JAVA_HOME/release file, for a JRE this will not exist
-        final Path releaseFile = javaHome.resolve("release");
-        if (Files.isReadable(releaseFile) && Files.isRegularFile(releaseFile)) {
-            // Read the file and look for a JAVA_VERSION property
-            try (final BufferedReader reader = Files.newBufferedReader(releaseFile, StandardCharsets.UTF_8)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("JAVA_VERSION=")) {
-                        // Get the version value
-                        final int index = line.indexOf('=');
-                        return isModularJavaVersion(line.substring(index + 1).replace("\"", ""));
-                    }
-                }
-            } catch (IOException ignore) {
-            }
-        }
-        // Final check is to launch a new process with some modular JVM arguments and check the exit code
-        return isModular(javaHome);
+        return capabilities().isEnhancedSecurityManager();
     }
 
-    private static boolean isModularJavaVersion(final String version) {
-        if (version != null) {
-            try {
-                final String[] versionParts = version.split("\\.");
-                if (versionParts.length == 1) {
-                    return Integer.parseInt(versionParts[0]) >= 9;
-                } else if (versionParts.length > 1) {
-                    // Check the first part and if one, use the second part
-                    if ("1".equals(versionParts[0])) {
-                        return Integer.parseInt(versionParts[2]) >= 9;
-                    }
-                    return Integer.parseInt(versionParts[0]) >= 9;
-                }
-            } catch (Exception ignore) {
-            }
+    /**
+     * Checks whether the package of the optional {@code --add-exports} or {@code --add-opens} argument is available in
+     * this JVM. The {@linkplain JBossModulesCommandBuilder#OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS default optional
+     * arguments} are answered from the probed capabilities, any other argument requires launching a new process.
+     *
+     * @param optionalModularArgument the argument to check
+     *
+     * @return {@code true} if the argument can be used with this JVM
+     */
+    public boolean isPackageAvailable(final String optionalModularArgument) {
+        final Boolean available = capabilities().isArgumentAvailable(optionalModularArgument);
+        if (available != null) {
+            return available;
         }
-        return false;
+        return isPackageAvailable(path, optionalModularArgument);
     }
 
-    private static boolean isSecurityManagerSupported(final Path javaHome) {
-        // Next check for a $JAVA_HOME/release file, for a JRE this will not exist
-        final Path releaseFile = javaHome.resolve("release");
-        if (Files.isReadable(releaseFile) && Files.isRegularFile(releaseFile)) {
-            // Read the file and look for a JAVA_VERSION property
-            try (final BufferedReader reader = Files.newBufferedReader(releaseFile, StandardCharsets.UTF_8)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("JAVA_VERSION=")) {
-                        // Get the version value
-                        final int index = line.indexOf('=');
-                        return isSecurityManagerSupported(line.substring(index + 1).replace("\"", ""));
-                    }
-                }
-            } catch (IOException ignore) {
-            }
-        }
-        // Final check is to launch a new process with some modular JVM arguments and check the exit code
-        return isSecurityManagerSupportedInJvm(javaHome);
+    /**
+     * Checks whether this JVM accepts the options, for example whether a garbage collector is available. The result
+     * is memoized for the life of this JVM.
+     *
+     * @param options the options to check
+     *
+     * @return {@code true} if the JVM accepts all the options
+     */
+    boolean isAccepted(final List<String> options) {
+        return isAccepted(path, options);
     }
 
-    private static boolean isSecurityManagerSupported(final String version) {
-        if (version != null) {
-            try {
-                final String[] versionParts = version.split("\\.");
-                if (versionParts.length >= 1) {
-                    return Integer.parseInt(versionParts[0]) < 24;
-                }
-            } catch (Exception ignore) {
-            }
+    /**
+     * Starts resolving the capabilities of this JVM in the background. Any query of the capabilities made before the
+     * resolution completes waits for the background resolution rather than starting another one. This allows the
+     * capabilities of several JVMs to be resolved concurrently, with the builders only waiting for them in
+     * {@link CommandBuilder#build()}.
+     *
+     * @return a future completed with this JVM once its capabilities have been resolved
+     */
+    CompletableFuture<Jvm> resolveAsync() {
+        if (capabilities != null) {
+            return CompletableFuture.completedFuture(this);
         }
-        return false;
+        return CompletableFuture.supplyAsync(() -> {
+            capabilities();
+            return this;
+        }, ResolverHolder.EXECUTOR);
     }
 
     /**
-     * Checks to see if the {@code javaHome} supports special security manager tokens like "allow", "disallow" & "default"
+     * Starts resolving the capabilities of the JVMs concurrently.
      *
-     * @param javaHome the Java Home if {@code null} an attempt to discover the Java Home will be done
+     * @param jvms the JVMs to resolve
      *
-     * @return {@code true} if this is a modular environment
+     * @return a future completed once the capabilities of all the JVMs have been resolved
      */
-    private static boolean hasEnhancedSecurityManager(final Path javaHome) {
-        final List<String> cmd = new ArrayList<>();
-        cmd.add(resolveJavaCommand(javaHome));
-        cmd.add("-Djava.security.manager=allow");
-        cmd.add("-version");
-        return checkProcessStatus(cmd);
+    static CompletableFuture<Void> resolveAll(final Collection<Jvm> jvms) {
+        return CompletableFuture.allOf(jvms.stream()
+                .distinct()
+                .map(Jvm::resolveAsync)
+                .toArray(CompletableFuture[]::new));
     }
 
-    static boolean isPackageAvailable(final Path javaHome, final String optionalModularArgument) {
-        final List<String> cmd = new ArrayList<>();
-        cmd.add(resolveJavaCommand(javaHome));
-        cmd.add(optionalModularArgument);
-        cmd.add("-version");
-        return checkProcessStatus(cmd);
+    private JvmCapabilities capabilities() {
+        JvmCapabilities result = capabilities;
+        if (result != null) {
+            return result;
+        }
+        // A failed probe is remembered for a short time so each query does not launch another probe
+        result = incompleteCapabilities;
+        if (result != null && System.nanoTime() - retryProbeAfter < 0L) {
+            return result;
+        }
+        // Concurrent resolution of the same Java home is handled by the cache
+        result = JvmCache.getInstance().resolve(path, Jvm::probeCapabilities);
+        if (result.isComplete()) {
+            capabilities = result;
+        } else {
+            retryProbeAfter = System.nanoTime() + TimeUnit.SECONDS.toNanos(PROBE_RETRY_SECONDS);
+            incompleteCapabilities = result;
+        }
+        return result;
     }
 
     /**
-     * Checks to see if the {@code javaHome} supports the security manager.
+     * Checks whether the package of the optional {@code --add-exports} or {@code --add-opens} argument is available in
+     * the JVM. The result is memoized for the life of this JVM and concurrent checks of the same argument for the same
+     * Java home share a single process.
      *
-     * @param javaHome the Java Home
+     * @param javaHome                the Java home of the JVM to check
+     * @param optionalModularArgument the argument to check
      *
-     * @return {@code true} if this JVM supports the security manager
+     * @return {@code true} if the argument can be used with the JVM
      */
-    private static boolean isSecurityManagerSupportedInJvm(final Path javaHome) {
-        final List<String> cmd = new ArrayList<>();
-        cmd.add(resolveJavaCommand(javaHome));
-        cmd.add("-Djava.security.manager");
-        cmd.add("-version");
-        return checkProcessStatus(cmd);
+    static boolean isPackageAvailable(final Path javaHome, final String optionalModularArgument) {
+        return isAccepted(javaHome, List.of(optionalModularArgument));
     }
 
     /**
-     * Checks to see if the {@code javaHome} is a modular JVM.
+     * Checks whether the JVM accepts the arguments. The result is memoized for the life of this JVM and concurrent
+     * checks of the same arguments for the same Java home share a single process.
      *
-     * @param javaHome the Java Home if {@code null} an attempt to discover the Java Home will be done
+     * @param javaHome  the Java home of the JVM to check
+     * @param arguments the arguments to check
      *
-     * @return {@code true} if this is a modular environment
+     * @return {@code true} if all the arguments can be used with the JVM
      */
-    private static boolean isModular(final Path javaHome) {
-        final List<String> cmd = new ArrayList<>();
-        cmd.add(resolveJavaCommand(javaHome));
-        cmd.add("--add-modules=java.se");
-        cmd.add("-version");
-        return checkProcessStatus(cmd);
+    static boolean isAccepted(final Path javaHome, final List<String> arguments) {
+        final ArgumentCheck key = new ArgumentCheck(javaHome.toAbsolutePath().normalize(), List.copyOf(arguments));
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final CompletableFuture<Boolean> existing = ARGUMENT_CHECKS.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.join();
+        }
+        boolean result = false;
+        try {
+            final JvmProbe probe = JvmProbe.run(javaHome, arguments);
+            if (probe.getExitCode() < 0) {
+                // The process could not be launched or did not complete, allow the check to be retried
+                ARGUMENT_CHECKS.remove(key, future);
+            }
+            result = arguments.stream().allMatch(probe::isAccepted);
+        } catch (RuntimeException e) {
+            ARGUMENT_CHECKS.remove(key, future);
+            throw e;
+        } finally {
+            future.complete(result);
+        }
+        return result;
     }
 
     /**
-     * Checks the process status.
+     * Resolves the capabilities of the Java home. The {@code $JAVA_HOME/release} file and the module image of the
+     * Java home are inspected first. A process is only launched if the Java home has no release file describing the
+     * version, and at most one process is launched for all questions. JVMs which do not accept modular arguments
+     * require a second process to determine the version.
      *
-     * @param cmd command to execute
+     * @param javaHome the Java home to probe
      *
-     * @return {@code true} if command was successful, {@code false} if process failed.
+     * @return the capabilities
      */
-    private static boolean checkProcessStatus(final List<String> cmd) {
-        boolean result;
-        final ProcessBuilder builder = new ProcessBuilder(cmd);
-        Process process = null;
-        Path stdout = null;
-        try {
-            // Create a temporary file for stdout
-            stdout = Files.createTempFile("stdout", ".txt");
-            process = builder.redirectErrorStream(true)
-                    .redirectOutput(stdout.toFile()).start();
-
-            if (process.waitFor(30, TimeUnit.SECONDS)) {
-                result = process.exitValue() == 0;
-            } else {
-                result = false;
+    private static JvmCapabilities probeCapabilities(final Path javaHome) {
+        final JvmInspector inspector = JvmInspector.of(javaHome);
+        final String releaseVersion = inspector.getJavaVersion();
+        // If the jmods directory exists we can safely assume this is a modular JDK, note even in a modular JDK this
+        // may not exist.
+        final boolean hasJmods = Files.isDirectory(javaHome.resolve("jmods"));
+        final int releaseFeatureVersion = inspector.getFeatureVersion();
+        if (releaseFeatureVersion > 0) {
+            final boolean modular = hasJmods || isModularJavaVersion(releaseVersion);
+            Map<String, Boolean> availableArguments = modular ?
+                    inspector.checkArguments(JBossModulesCommandBuilder.OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) : Map.of();
+            if (availableArguments == null) {
+                // The module image could not be read, the arguments will be checked if they are required
+                availableArguments = Map.of();
             }
-        } catch (IOException | InterruptedException e) {
-            result = false;
-        } finally {
-            if (process != null && process.isAlive()) {
-                process.destroyForcibly();
+            return new JvmCapabilities(releaseFeatureVersion, inspector.getRuntimeVersion(), inspector.getImplementor(),
+                    modular, isSecurityManagerSupported(releaseVersion), isEnhancedSecurityManagerVersion(releaseFeatureVersion),
+                    availableArguments);
+        }
+
+        // Final check is to launch a new process
+        final List<String> arguments = new ArrayList<>();
+        arguments.add("--add-modules=java.se");
+        arguments.addAll(JBossModulesCommandBuilder.OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS);
+        JvmProbe probe = JvmProbe.run(javaHome, arguments);
+        final boolean modularProbe = probe.isSuccessful();
+        if (probe.getExitCode() > 0) {
+            // Legacy JVMs reject the modular arguments, launch again without them to get the version
+            probe = JvmProbe.run(javaHome, List.of());
+        }
+        final int featureVersion;
+        final String runtimeVersion;
+        final String vendor;
+        if (probe.isSuccessful()) {
+            featureVersion = probe.getFeatureVersion();
+            runtimeVersion = probe.getProperty("java.runtime.version");
+            vendor = probe.getProperty("java.vendor");
+        } else {
+            featureVersion = releaseFeatureVersion;
+            runtimeVersion = inspector.getRuntimeVersion();
+            vendor = inspector.getImplementor();
+        }
+
+        final boolean modular;
+        if (hasJmods) {
+            modular = true;
+        } else if (releaseVersion != null) {
+            modular = isModularJavaVersion(releaseVersion);
+        } else {
+            modular = modularProbe;
+        }
+        final boolean securityManagerSupported;
+        if (releaseVersion != null) {
+            securityManagerSupported = isSecurityManagerSupported(releaseVersion);
+        } else {
+            securityManagerSupported = probe.isSuccessful() && featureVersion < 24;
+        }
+        final boolean enhancedSecurityManager = probe.isSuccessful() && isEnhancedSecurityManagerVersion(featureVersion);
+
+        final Map<String, Boolean> availableArguments = new LinkedHashMap<>();
+        if (modularProbe) {
+            for (String argument : JBossModulesCommandBuilder.OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
+                availableArguments.put(argument, probe.isAccepted(argument));
+            }
+        }
+        return new JvmCapabilities(featureVersion, runtimeVersion, vendor, modular, securityManagerSupported,
+                enhancedSecurityManager, availableArguments);
+    }
+
+    /**
+     * Resolves the capabilities of the current JVM without launching a new process.
+     *
+     * @return the capabilities of the current JVM
+     */
+    private static JvmCapabilities currentCapabilities() {
+        final Map<String, Boolean> availableArguments = new LinkedHashMap<>();
+        for (String argument : JBossModulesCommandBuilder.OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
+            final String[] target = JvmProbe.parseModulePackage(argument);
+            if (target != null) {
+                // If the module is not in the boot layer, leave the argument to be probed
+                ModuleLayer.boot().findModule(target[0])
+                        .ifPresent(module -> availableArguments.put(argument, module.getPackages().contains(target[1])));
             }
-            if (stdout != null) {
-                try {
-                    if (containsWarning(stdout)) {
-                        result = false;
+        }
+        return new JvmCapabilities(Runtime.version().feature(), Runtime.version().toString(),
+                System.getProperty("java.vendor"), true, SUPPORTS_SECURITY_MANGER, ENHANCED_SECURITY_MANAGER,
+                availableArguments);
+    }
+
+    private static boolean isEnhancedSecurityManagerVersion(final int featureVersion) {
+        // The special values for the java.security.manager system property were introduced in Java 12 and the
+        // security manager was removed in Java 24
+        return featureVersion >= 12 && featureVersion < 24;
+    }
+
+    private static boolean isModularJavaVersion(final String version) {
+        if (version != null) {
+            try {
+                final String[] versionParts = version.split("\\.");
+                if (versionParts.length == 1) {
+                    return Integer.parseInt(versionParts[0]) >= 9;
+                } else if (versionParts.length > 1) {
+                    // Check the first part and if one, use the second part
+                    if ("1".equals(versionParts[0])) {
+                        return Integer.parseInt(versionParts[2]) >= 9;
                     }
-                    Files.deleteIfExists(stdout);
-                } catch (IOException ignore) {
+                    return Integer.parseInt(versionParts[0]) >= 9;
                 }
+            } catch (Exception ignore) {
             }
         }
-        return result;
+        return false;
     }
 
-    private static boolean containsWarning(final Path logFile) throws IOException {
-        String line;
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(logFile.toFile())))) {
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith("WARNING:")) {
-                    return true;
+    private static boolean isSecurityManagerSupported(final String version) {
+        if (version != null) {
+            try {
+                final String[] versionParts = version.split("\\.");
+                if (versionParts.length >= 1) {
+                    return Integer.parseInt(versionParts[0]) < 24;
                 }
+            } catch (Exception ignore) {
             }
         }
         return false;
@@ -360,4 +491,43 @@ class Jvm {
         }
         return result;
     }
+
+    private static class ResolverThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "wildfly-launcher-jvm-resolver-" + count.incrementAndGet());
+            // Resolution must never prevent the JVM from exiting
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class ArgumentCheck {
+        private final Path javaHome;
+        private final List<String> arguments;
+
+        private ArgumentCheck(final Path javaHome, final List<String> arguments) {
+            this.javaHome = javaHome;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(javaHome, arguments);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ArgumentCheck)) {
+                return false;
+            }
+            final ArgumentCheck other = (ArgumentCheck) obj;
+            return javaHome.equals(other.javaHome) && arguments.equals(other.arguments);
+        }
+    }
 }
@@ -0,0 +1,299 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A cache of the {@linkplain JvmCapabilities capabilities} probed for a Java home. Entries are kept in memory and, if
+ * a cache directory is available, persisted so other processes using the same Java home do not need to probe it
+ * again.
+ * <p>
+ * Entries are keyed by the canonical path of the Java home. Each entry records a fingerprint of the
+ * {@code $JAVA_HOME/release} file and the {@code java} executable. If either changes, for example when a JDK is
+ * upgraded in place, the entry is ignored and the Java home is probed again.
+ * </p>
+ * <p>
+ * The default cache directory is {@code $XDG_CACHE_HOME/wildfly-launcher} falling back to
+ * {@code ~/.cache/wildfly-launcher}. The directory can be changed with the {@value #CACHE_DIR_PROPERTY} system
+ * property. Setting the {@value #ENABLED_PROPERTY} system property to {@code false} disables the persistent cache.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class JvmCache {
+    static final String CACHE_DIR_PROPERTY = "wildfly.launcher.cache.dir";
+    static final String ENABLED_PROPERTY = "wildfly.launcher.jvm.cache";
+
+    private static final String JAVA_HOME_KEY = "java.home";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static class Holder {
+        static final JvmCache INSTANCE = new JvmCache(resolveCacheDir());
+    }
+
+    private final Path cacheDir;
+    private final Map<Path, Entry> entries;
+    private final Map<Path, CompletableFuture<JvmCapabilities>> inFlight;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param cacheDir the directory to persist entries to or {@code null} to only cache the entries in memory
+     */
+    JvmCache(final Path cacheDir) {
+        this.cacheDir = cacheDir;
+        entries = new ConcurrentHashMap<>();
+        inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the shared cache.
+     *
+     * @return the shared cache
+     */
+    static JvmCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the cached capabilities for the Java home or probes the Java home if there is no valid entry. Concurrent
+     * requests for the same Java home share a single probe. {@linkplain JvmCapabilities#isComplete() Incomplete}
+     * capabilities are returned but not cached.
+     *
+     * @param javaHome the Java home
+     * @param probe    the function used to probe the Java home
+     *
+     * @return the capabilities for the Java home
+     */
+    JvmCapabilities resolve(final Path javaHome, final Function<Path, JvmCapabilities> probe) {
+        final JvmCapabilities cached = get(javaHome);
+        if (cached != null) {
+            return cached;
+        }
+        final Path key = javaHome.toAbsolutePath().normalize();
+        final CompletableFuture<JvmCapabilities> future = new CompletableFuture<>();
+        final CompletableFuture<JvmCapabilities> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            // Another thread may have completed a probe between the lookup and registering this probe
+            JvmCapabilities capabilities = get(javaHome);
+            if (capabilities == null) {
+                capabilities = probe.apply(javaHome);
+                // A probe which failed or timed out is not cached so the Java home is probed again
+                if (capabilities.isComplete()) {
+                    put(javaHome, capabilities);
+                }
+            }
+            future.complete(capabilities);
+            return capabilities;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Returns the cached capabilities for the Java home.
+     *
+     * @param javaHome the Java home
+     *
+     * @return the capabilities or {@code null} if there is no entry or the entry is stale
+     */
+    JvmCapabilities get(final Path javaHome) {
+        final Path key;
+        final String fingerprint;
+        try {
+            key = javaHome.toRealPath();
+            fingerprint = fingerprint(key);
+        } catch (IOException ignore) {
+            return null;
+        }
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.fingerprint.equals(fingerprint)) {
+            return entry.capabilities;
+        }
+        if (cacheDir == null) {
+            return null;
+        }
+        final Path file = cacheDir.resolve(fileName(key));
+        if (Files.notExists(file)) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException ignore) {
+            return null;
+        }
+        if (!fingerprint.equals(properties.getProperty(FINGERPRINT_KEY))) {
+            return null;
+        }
+        final JvmCapabilities capabilities = JvmCapabilities.fromProperties(properties);
+        if (capabilities != null) {
+            entries.put(key, new Entry(fingerprint, capabilities));
+        }
+        return capabilities;
+    }
+
+    /**
+     * Caches the capabilities for the Java home. Failures persisting the entry are ignored.
+     *
+     * @param javaHome     the Java home
+     * @param capabilities the capabilities to cache
+     */
+    void put(final Path javaHome, final JvmCapabilities capabilities) {
+        final Path key;
+        final String fingerprint;
+        try {
+            key = javaHome.toRealPath();
+            fingerprint = fingerprint(key);
+        } catch (IOException ignore) {
+            return;
+        }
+        entries.put(key, new Entry(fingerprint, capabilities));
+        if (cacheDir == null) {
+            return;
+        }
+        final Properties properties = capabilities.toProperties();
+        properties.setProperty(JAVA_HOME_KEY, key.toString());
+        properties.setProperty(FINGERPRINT_KEY, fingerprint);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(cacheDir);
+            // Write to a temporary file and move it so concurrent readers never see a partially written entry
+            tempFile = Files.createTempFile(cacheDir, "jvm-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                properties.store(out, null);
+            }
+            final Path file = cacheDir.resolve(fileName(key));
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | SecurityException ignore) {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a fingerprint of the Java home. The fingerprint includes the contents of the {@code release} file and the
+     * size, modification time and file key of the {@code java} executable.
+     *
+     * @param javaHome the canonical Java home
+     *
+     * @return the fingerprint
+     *
+     * @throws IOException if the Java home cannot be read
+     */
+    static String fingerprint(final Path javaHome) throws IOException {
+        final MessageDigest digest = sha256();
+        final Path releaseFile = javaHome.resolve("release");
+        if (Files.isRegularFile(releaseFile)) {
+            digest.update(Files.readAllBytes(releaseFile));
+        }
+        digest.update((byte) 0);
+        final Path exe = javaHome.resolve("bin").resolve(Environment.isWindows() ? "java.exe" : "java");
+        final BasicFileAttributes attributes = Files.readAttributes(exe, BasicFileAttributes.class);
+        final String exeDescription = attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + ":" +
+                attributes.fileKey();
+        digest.update(exeDescription.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String fileName(final Path key) {
+        return "jvm-" + toHex(sha256().digest(key.toString().getBytes(StandardCharsets.UTF_8))) + ".properties";
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+        }
+        return result.toString();
+    }
+
+    private static Path resolveCacheDir() {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            return null;
+        }
+        final String dir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (dir != null && !dir.isBlank()) {
+            return Paths.get(dir);
+        }
+        final String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+        if (xdgCacheHome != null && !xdgCacheHome.isBlank()) {
+            return Paths.get(xdgCacheHome, "wildfly-launcher");
+        }
+        final String userHome = System.getProperty("user.home");
+        if (userHome == null || userHome.isBlank()) {
+            return null;
+        }
+        return Paths.get(userHome, ".cache", "wildfly-launcher");
+    }
+
+    private static class Entry {
+        final String fingerprint;
+        final JvmCapabilities capabilities;
+
+        private Entry(final String fingerprint, final JvmCapabilities capabilities) {
+            this.fingerprint = fingerprint;
+            this.capabilities = capabilities;
+        }
+    }
+}
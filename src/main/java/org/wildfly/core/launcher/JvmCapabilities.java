@@ -0,0 +1,192 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.StringJoiner;
+
+/**
+ * The capabilities of a JVM which are resolved by probing a Java home.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class JvmCapabilities {
+    private static final String FEATURE_VERSION = "feature-version";
+    private static final String RUNTIME_VERSION = "runtime-version";
+    private static final String VENDOR = "vendor";
+    private static final String MODULAR = "modular";
+    private static final String SECURITY_MANAGER_SUPPORTED = "security-manager.supported";
+    private static final String ENHANCED_SECURITY_MANAGER = "security-manager.enhanced";
+    private static final String AVAILABLE_ARGUMENTS = "arguments.available";
+    private static final String UNAVAILABLE_ARGUMENTS = "arguments.unavailable";
+
+    private final int featureVersion;
+    private final String runtimeVersion;
+    private final String vendor;
+    private final boolean modular;
+    private final boolean securityManagerSupported;
+    private final boolean enhancedSecurityManager;
+    private final Map<String, Boolean> arguments;
+
+    JvmCapabilities(final int featureVersion, final String runtimeVersion, final String vendor, final boolean modular,
+                    final boolean securityManagerSupported, final boolean enhancedSecurityManager,
+                    final Map<String, Boolean> arguments) {
+        this.featureVersion = featureVersion;
+        this.runtimeVersion = runtimeVersion;
+        this.vendor = vendor;
+        this.modular = modular;
+        this.securityManagerSupported = securityManagerSupported;
+        this.enhancedSecurityManager = enhancedSecurityManager;
+        this.arguments = Collections.unmodifiableMap(new LinkedHashMap<>(arguments));
+    }
+
+    /**
+     * Creates the capabilities from properties previously created with {@link #toProperties()}.
+     *
+     * @param properties the properties to read the capabilities from
+     *
+     * @return the capabilities or {@code null} if the properties do not describe the capabilities
+     */
+    static JvmCapabilities fromProperties(final Properties properties) {
+        final String featureVersion = properties.getProperty(FEATURE_VERSION);
+        final String modular = properties.getProperty(MODULAR);
+        final String securityManagerSupported = properties.getProperty(SECURITY_MANAGER_SUPPORTED);
+        final String enhancedSecurityManager = properties.getProperty(ENHANCED_SECURITY_MANAGER);
+        if (featureVersion == null || modular == null || securityManagerSupported == null || enhancedSecurityManager == null) {
+            return null;
+        }
+        final Map<String, Boolean> arguments = new LinkedHashMap<>();
+        readArguments(properties.getProperty(AVAILABLE_ARGUMENTS), true, arguments);
+        readArguments(properties.getProperty(UNAVAILABLE_ARGUMENTS), false, arguments);
+        try {
+            return new JvmCapabilities(Integer.parseInt(featureVersion), properties.getProperty(RUNTIME_VERSION),
+                    properties.getProperty(VENDOR), Boolean.parseBoolean(modular),
+                    Boolean.parseBoolean(securityManagerSupported), Boolean.parseBoolean(enhancedSecurityManager), arguments);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the feature version of the JVM, for example {@code 21}.
+     *
+     * @return the feature version or -1 if unknown
+     */
+    int getFeatureVersion() {
+        return featureVersion;
+    }
+
+    /**
+     * Indicates whether the capabilities were fully resolved. The capabilities are incomplete if the probe process
+     * could not be launched or timed out and the Java home has no release file describing the version.
+     *
+     * @return {@code true} if the version of the JVM is known
+     */
+    boolean isComplete() {
+        return featureVersion > 0;
+    }
+
+    /**
+     * Returns the full runtime version of the JVM including the build, for example {@code 21.0.5+11-LTS}.
+     *
+     * @return the runtime version or {@code null} if unknown
+     */
+    String getRuntimeVersion() {
+        return runtimeVersion;
+    }
+
+    /**
+     * Returns the vendor, or implementor, of the JVM.
+     *
+     * @return the vendor or {@code null} if unknown
+     */
+    String getVendor() {
+        return vendor;
+    }
+
+    /**
+     * Indicates whether the JVM is modular.
+     *
+     * @return {@code true} if the JVM is modular
+     */
+    boolean isModular() {
+        return modular;
+    }
+
+    /**
+     * Indicates whether the JVM supports the security manager.
+     *
+     * @return {@code true} if the security manager is supported
+     */
+    boolean isSecurityManagerSupported() {
+        return securityManagerSupported;
+    }
+
+    /**
+     * Indicates whether the JVM supports special security manager values like "allow", "disallow" and "default".
+     *
+     * @return {@code true} if the enhanced security manager values are supported
+     */
+    boolean isEnhancedSecurityManager() {
+        return enhancedSecurityManager;
+    }
+
+    /**
+     * Indicates whether the argument is available in the JVM.
+     *
+     * @param argument the argument to check
+     *
+     * @return {@code true} or {@code false} if the argument was probed, {@code null} if the argument was not probed
+     */
+    Boolean isArgumentAvailable(final String argument) {
+        return arguments.get(argument);
+    }
+
+    /**
+     * Writes the capabilities to a properties object.
+     *
+     * @return the properties describing the capabilities
+     */
+    Properties toProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty(FEATURE_VERSION, Integer.toString(featureVersion));
+        if (runtimeVersion != null) {
+            properties.setProperty(RUNTIME_VERSION, runtimeVersion);
+        }
+        if (vendor != null) {
+            properties.setProperty(VENDOR, vendor);
+        }
+        properties.setProperty(MODULAR, Boolean.toString(modular));
+        properties.setProperty(SECURITY_MANAGER_SUPPORTED, Boolean.toString(securityManagerSupported));
+        properties.setProperty(ENHANCED_SECURITY_MANAGER, Boolean.toString(enhancedSecurityManager));
+        // Arguments never contain whitespace which allows them to be stored as a space delimited list
+        final StringJoiner available = new StringJoiner(" ");
+        final StringJoiner unavailable = new StringJoiner(" ");
+        arguments.forEach((argument, value) -> (value ? available : unavailable).add(argument));
+        properties.setProperty(AVAILABLE_ARGUMENTS, available.toString());
+        properties.setProperty(UNAVAILABLE_ARGUMENTS, unavailable.toString());
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+        return "JvmCapabilities[featureVersion=" + featureVersion + ", runtimeVersion=" + runtimeVersion +
+                ", vendor=" + vendor + ", modular=" + modular +
+                ", securityManagerSupported=" + securityManagerSupported +
+                ", enhancedSecurityManager=" + enhancedSecurityManager + ", arguments=" + arguments + "]";
+    }
+
+    private static void readArguments(final String value, final boolean available, final Map<String, Boolean> arguments) {
+        if (value != null && !value.isBlank()) {
+            for (String argument : value.trim().split("\\s+")) {
+                arguments.put(argument, available);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Inspects a Java home without launching a process.
+ * <p>
+ * The {@code $JAVA_HOME/release} file describes the version, vendor and modules of the JVM. Whether the package of an
+ * {@code --add-exports} or {@code --add-opens} argument exists is checked by opening the {@code lib/modules} image of
+ * the Java home with a {@code jrt} file system bound to that Java home.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class JvmInspector {
+
+    private final Path javaHome;
+    private final String javaVersion;
+    private final String runtimeVersion;
+    private final String implementor;
+    private final Set<String> modules;
+
+    private JvmInspector(final Path javaHome, final String javaVersion, final String runtimeVersion,
+                         final String implementor, final Set<String> modules) {
+        this.javaHome = javaHome;
+        this.javaVersion = javaVersion;
+        this.runtimeVersion = runtimeVersion;
+        this.implementor = implementor;
+        this.modules = modules;
+    }
+
+    /**
+     * Creates an inspector for the Java home reading the {@code $JAVA_HOME/release} file if it exists.
+     *
+     * @param javaHome the Java home to inspect
+     *
+     * @return the inspector
+     */
+    static JvmInspector of(final Path javaHome) {
+        final Path releaseFile = javaHome.resolve("release");
+        final Properties properties = new Properties();
+        if (Files.isReadable(releaseFile) && Files.isRegularFile(releaseFile)) {
+            try (Reader reader = Files.newBufferedReader(releaseFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException | IllegalArgumentException ignore) {
+                // Treat an unreadable file as if there was no release file
+                properties.clear();
+            }
+        }
+        final String modules = value(properties, "MODULES");
+        return new JvmInspector(javaHome, value(properties, "JAVA_VERSION"), value(properties, "JAVA_RUNTIME_VERSION"),
+                value(properties, "IMPLEMENTOR"), modules == null ? null : Set.of(modules.trim().split("\\s+")));
+    }
+
+    /**
+     * The {@code JAVA_VERSION} from the release file.
+     *
+     * @return the Java version or {@code null} if not defined
+     */
+    String getJavaVersion() {
+        return javaVersion;
+    }
+
+    /**
+     * The feature version parsed from the {@code JAVA_VERSION} of the release file.
+     *
+     * @return the feature version or -1 if it could not be determined
+     */
+    int getFeatureVersion() {
+        return JvmProbe.parseFeatureVersion(javaVersion);
+    }
+
+    /**
+     * The {@code JAVA_RUNTIME_VERSION} from the release file, which includes the build number.
+     *
+     * @return the runtime version or {@code null} if not defined
+     */
+    String getRuntimeVersion() {
+        return runtimeVersion;
+    }
+
+    /**
+     * The {@code IMPLEMENTOR} from the release file.
+     *
+     * @return the implementor or {@code null} if not defined
+     */
+    String getImplementor() {
+        return implementor;
+    }
+
+    /**
+     * The {@code MODULES} from the release file.
+     *
+     * @return the modules in the image or {@code null} if not defined
+     */
+    Set<String> getModules() {
+        return modules;
+    }
+
+    /**
+     * Checks whether the module and package of each {@code --add-exports} or {@code --add-opens} argument exist in
+     * the Java home.
+     *
+     * @param arguments the arguments to check
+     *
+     * @return a map of each argument to whether it is available or {@code null} if the arguments could not be checked
+     * without launching a process
+     */
+    Map<String, Boolean> checkArguments(final Collection<String> arguments) {
+        if (Files.notExists(javaHome.resolve("lib").resolve("modules"))) {
+            return null;
+        }
+        final Map<String, Boolean> result = new LinkedHashMap<>();
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("jrt:/"), Map.of("java.home", javaHome.toString()))) {
+            for (String argument : arguments) {
+                final String[] target = JvmProbe.parseModulePackage(argument);
+                if (target == null) {
+                    return null;
+                }
+                if (modules != null && !modules.contains(target[0])) {
+                    result.put(argument, false);
+                } else {
+                    result.put(argument, containsClasses(fs.getPath("/modules", target[0], target[1].replace('.', '/'))));
+                }
+            }
+        } catch (IOException | RuntimeException ignore) {
+            // The jrt file system of the Java home cannot be loaded by this JVM
+            return null;
+        }
+        return result;
+    }
+
+    private static boolean containsClasses(final Path packageDir) throws IOException {
+        // A directory without any files may only be the parent of other packages
+        if (Files.isDirectory(packageDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(packageDir)) {
+                for (Path path : stream) {
+                    if (Files.isRegularFile(path)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String value(final Properties properties, final String key) {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            return null;
+        }
+        return value.replace("\"", "");
+    }
+}
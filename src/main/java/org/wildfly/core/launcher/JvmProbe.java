@@ -0,0 +1,237 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Launches a JVM once with a set of arguments to determine which of the arguments the JVM accepts and to read the
+ * system properties of the JVM.
+ * <p>
+ * The JVM is launched with {@code -XshowSettings:properties -version} and the output is read through a pipe. The JVM
+ * writes a {@code WARNING:} line for each {@code --add-exports} or {@code --add-opens} argument it cannot apply which
+ * allows a single process to answer whether each of the arguments is available.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class JvmProbe {
+    private static final long TIMEOUT_SECONDS = 30L;
+    private static final String WARNING_PREFIX = "WARNING:";
+
+    private final int exitCode;
+    private final Map<String, String> properties;
+    private final List<String> warnings;
+
+    private JvmProbe(final int exitCode, final Map<String, String> properties, final List<String> warnings) {
+        this.exitCode = exitCode;
+        this.properties = properties;
+        this.warnings = warnings;
+    }
+
+    /**
+     * Launches the JVM with the arguments and collects the output.
+     *
+     * @param javaHome  the Java home of the JVM to launch
+     * @param arguments the arguments to check
+     *
+     * @return the result of the probe
+     */
+    static JvmProbe run(final Path javaHome, final Collection<String> arguments) {
+        final List<String> cmd = new ArrayList<>();
+        cmd.add(javaHome.resolve("bin").resolve("java").toString());
+        cmd.addAll(arguments);
+        cmd.add("-XshowSettings:properties");
+        cmd.add("-version");
+        Process process = null;
+        try {
+            process = new ProcessBuilder(cmd)
+                    .redirectErrorStream(true)
+                    .start();
+            final InputStream in = process.getInputStream();
+            final CompletableFuture<List<String>> output = CompletableFuture.supplyAsync(() -> readLines(in));
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return failed();
+            }
+            final List<String> lines = output.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            final Map<String, String> properties = new HashMap<>();
+            final List<String> warnings = new ArrayList<>();
+            for (String line : lines) {
+                if (line.startsWith(WARNING_PREFIX)) {
+                    warnings.add(line.substring(WARNING_PREFIX.length()).trim());
+                } else if (line.startsWith("    ") && !line.startsWith("     ")) {
+                    // Property lines are indented by four spaces, continuation lines of multi-valued properties are
+                    // indented further
+                    final int index = line.indexOf(" = ");
+                    if (index > 0) {
+                        properties.put(line.substring(4, index), line.substring(index + 3));
+                    }
+                }
+            }
+            return new JvmProbe(process.exitValue(), Collections.unmodifiableMap(properties), Collections.unmodifiableList(warnings));
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return failed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed();
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the JVM was launched and exited successfully.
+     *
+     * @return {@code true} if the JVM exited with an exit code of 0
+     */
+    boolean isSuccessful() {
+        return exitCode == 0;
+    }
+
+    /**
+     * Returns the exit code of the JVM or -1 if the JVM could not be launched or did not exit in time.
+     *
+     * @return the exit code
+     */
+    int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Returns the system property reported by the JVM.
+     *
+     * @param key the system property key
+     *
+     * @return the value or {@code null} if the property was not reported
+     */
+    String getProperty(final String key) {
+        return properties.get(key);
+    }
+
+    /**
+     * Returns the feature version of the JVM based on the {@code java.specification.version} system property.
+     *
+     * @return the feature version or -1 if the version could not be determined
+     */
+    int getFeatureVersion() {
+        return parseFeatureVersion(getProperty("java.specification.version"));
+    }
+
+    /**
+     * Returns the warnings the JVM printed, without the {@code WARNING:} prefix.
+     *
+     * @return the warnings
+     */
+    List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Indicates whether the JVM accepted the argument. An {@code --add-exports} or {@code --add-opens} argument is
+     * accepted if the JVM did not report the module or package as missing. Any other argument is accepted if the JVM
+     * exited successfully.
+     *
+     * @param argument the argument the JVM was launched with
+     *
+     * @return {@code true} if the argument was accepted
+     */
+    boolean isAccepted(final String argument) {
+        if (!isSuccessful()) {
+            return false;
+        }
+        final String[] target = parseModulePackage(argument);
+        if (target == null) {
+            return true;
+        }
+        final String missingPackage = "package " + target[1] + " not in " + target[0];
+        final String missingModule = "Unknown module: " + target[0] + " ";
+        for (String warning : warnings) {
+            if (warning.equals(missingPackage) || warning.startsWith(missingModule)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the module and package from an {@code --add-exports} or {@code --add-opens} argument in the form of
+     * {@code --add-opens=module/package=target}.
+     *
+     * @param argument the argument to parse
+     *
+     * @return a two element array with the module and the package or {@code null} if the argument is not an
+     * {@code --add-exports} or {@code --add-opens} argument
+     */
+    static String[] parseModulePackage(final String argument) {
+        if (!argument.startsWith("--add-exports=") && !argument.startsWith("--add-opens=")) {
+            return null;
+        }
+        final String value = argument.substring(argument.indexOf('=') + 1);
+        final int slash = value.indexOf('/');
+        final int equals = value.indexOf('=', slash);
+        if (slash < 1 || equals < slash) {
+            return null;
+        }
+        return new String[] {value.substring(0, slash), value.substring(slash + 1, equals)};
+    }
+
+    /**
+     * Parses the feature version from a Java version string. Legacy versions such as {@code 1.8.0_432} return the
+     * second part of the version.
+     *
+     * @param version the version to parse
+     *
+     * @return the feature version or -1 if the version could not be parsed
+     */
+    static int parseFeatureVersion(final String version) {
+        if (version != null) {
+            try {
+                final String[] versionParts = version.split("[.+\\-_]");
+                if ("1".equals(versionParts[0]) && versionParts.length > 1) {
+                    return Integer.parseInt(versionParts[1]);
+                }
+                return Integer.parseInt(versionParts[0]);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return -1;
+    }
+
+    private static JvmProbe failed() {
+        return new JvmProbe(-1, Map.of(), List.of());
+    }
+
+    private static List<String> readLines(final InputStream in) {
+        final List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * A handle to a process launched {@linkplain Launcher#launchAsync() asynchronously}.
+ * <p>
+ * The handle consumes the output of the process and writes it to the output destination of the launcher. While
+ * consuming the output the handle watches for the messages logged by WildFly once the server has booted,
+ * {@code WFLYSRV0025} or {@code WFLYSRV0026} if the server booted with errors, and the messages logged if the server
+ * stopped, {@code WFLYSRV0050}, or failed to boot, {@code WFLYSRV0056}, before it booted. The output of all the
+ * processes launched asynchronously is consumed by a small number of shared threads rather than a thread per
+ * process. The processes are also started by a bounded number of shared threads, launches are queued while all the
+ * threads are busy, for example training ahead-of-time caches.
+ * </p>
+ *
+ * <pre>
+ *     final LaunchHandle handle = Launcher.of(builder).launchAsync();
+ *     handle.booted()
+ *             .thenAccept(process -&gt; deploy(process))
+ *             .exceptionally(error -&gt; fail(error));
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class LaunchHandle {
+
+    private static class ExecutorHolder {
+        static final Executor EXECUTOR;
+
+        static {
+            // Preparing a launch may train the ahead-of-time cache for minutes, launches beyond the threads are queued
+            final int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new LauncherThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            EXECUTOR = executor;
+        }
+    }
+
+    private final CompletableFuture<Process> started;
+    private final CompletableFuture<Process> booted;
+    private final CompletableFuture<Void> outputConsumed;
+    private final CompletableFuture<Process> exited;
+    private volatile boolean bootedWithErrors;
+
+    /**
+     * Creates a handle for a process which has not been started yet.
+     */
+    LaunchHandle() {
+        started = new CompletableFuture<>();
+        booted = new CompletableFuture<>();
+        outputConsumed = new CompletableFuture<>();
+        exited = started.thenCompose(Process::onExit).thenCombine(outputConsumed, (process, ignore) -> process);
+    }
+
+    /**
+     * Starts the process in the background.
+     *
+     * @param processBuilder the process builder which must pipe the output of the process
+     * @param output         the opener for the destination of the output of the process
+     * @param error          the opener for the destination of the piped error stream of the process or {@code null} if
+     *                       the error stream is not piped
+     *
+     * @return this handle
+     */
+    LaunchHandle start(final ProcessBuilder processBuilder, final RedirectSink.Opener output,
+                       final RedirectSink.Opener error) {
+        return start(() -> processBuilder, output, error);
+    }
+
+    /**
+     * Prepares and starts the process in the background. The process is only considered started once it has been
+     * prepared, for example once the ahead-of-time cache of the server has been trained.
+     *
+     * @param processBuilder prepares the process builder which must pipe the output of the process
+     * @param output         the opener for the destination of the output of the process
+     * @param error          the opener for the destination of the piped error stream of the process or {@code null} if
+     *                       the error stream is not piped
+     *
+     * @return this handle
+     */
+    LaunchHandle start(final Callable<ProcessBuilder> processBuilder, final RedirectSink.Opener output,
+                       final RedirectSink.Opener error) {
+        if (Thread.currentThread() instanceof LauncherThread) {
+            // A launch while preparing another launch, for example to train the ahead-of-time cache, must not wait for
+            // a thread held by the launch it is part of
+            run(processBuilder, output, error);
+        } else {
+            ExecutorHolder.EXECUTOR.execute(() -> run(processBuilder, output, error));
+        }
+        return this;
+    }
+
+    /**
+     * Fails the handle of a process which could not be started.
+     *
+     * @param cause the reason the process could not be started
+     */
+    void fail(final Throwable cause) {
+        started.completeExceptionally(cause);
+        booted.completeExceptionally(cause);
+    }
+
+    /**
+     * Returns a future which is completed once the process has been started.
+     *
+     * @return a future completed with the process or exceptionally if the process could not be started
+     */
+    public CompletableFuture<Process> started() {
+        return started.copy();
+    }
+
+    /**
+     * Returns a future which is completed once the server has booted. A server which booted with errors is considered
+     * booted.
+     *
+     * @return a future completed with the process or exceptionally if the process could not be started, exited before
+     * the server booted or the server logged that it stopped or failed to boot
+     */
+    public CompletableFuture<Process> booted() {
+        return booted.copy();
+    }
+
+    /**
+     * Indicates whether the server logged that it booted with errors, {@code WFLYSRV0026}.
+     *
+     * @return {@code true} if the server booted with errors
+     */
+    public boolean isBootedWithErrors() {
+        return bootedWithErrors;
+    }
+
+    /**
+     * Returns a future which is completed once the process has exited and all its output has been written to the
+     * output destination.
+     *
+     * @return a future completed with the process or exceptionally if the process could not be started
+     *
+     * @see Process#onExit()
+     */
+    public CompletableFuture<Process> onExit() {
+        return exited.copy();
+    }
+
+    private void run(final Callable<ProcessBuilder> processBuilder, final RedirectSink.Opener output,
+                     final RedirectSink.Opener error) {
+        final Process process;
+        RedirectSink out = null;
+        RedirectSink err = null;
+        try {
+            final ProcessBuilder prepared = processBuilder.call();
+            out = output.open();
+            if (error != null) {
+                err = error.open();
+            }
+            process = prepared.start();
+        } catch (Exception e) {
+            RedirectSink.close(out);
+            RedirectSink.close(err);
+            fail(e);
+            return;
+        }
+        if (!started.complete(process)) {
+            // The handle failed while the process was prepared, for example as the server did not boot in time
+            process.destroyForcibly();
+            RedirectSink.close(out);
+            RedirectSink.close(err);
+            return;
+        }
+        OutputPump.getInstance().register(process.getInputStream(), process, new OutputSink(out, process));
+        if (err != null) {
+            OutputPump.getInstance().register(process.getErrorStream(), process, err);
+        }
+    }
+
+    private void bootComplete(final BootMarkerDetector.Status status, final Process process) {
+        if (status.isStarted()) {
+            bootedWithErrors = status == BootMarkerDetector.Status.STARTED_WITH_ERRORS;
+            booted.complete(process);
+        } else {
+            booted.completeExceptionally(LauncherMessages.MESSAGES.serverBootFailed(status.getMessageId()));
+        }
+    }
+
+    /**
+     * Writes the output of the process to the output destination and watches it for the boot messages.
+     */
+    private class OutputSink implements OutputPump.Sink {
+        private final OutputPump.Sink delegate;
+        private final BootMarkerDetector detector;
+        private final Process process;
+
+        private OutputSink(final OutputPump.Sink delegate, final Process process) {
+            this.delegate = delegate;
+            this.process = process;
+            detector = new BootMarkerDetector();
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+            delegate.write(bytes, offset, length);
+            if (!booted.isDone()) {
+                final BootMarkerDetector.Status status = detector.update(bytes, offset, length);
+                if (status != null) {
+                    bootComplete(status, process);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+            outputConsumed.complete(null);
+            if (!booted.isDone()) {
+                // All the output has been read without finding a boot marker, the process is exiting
+                process.onExit().thenAccept(p -> booted.completeExceptionally(
+                        LauncherMessages.MESSAGES.processExitedBeforeBoot(p.exitValue())));
+            }
+        }
+    }
+
+    private static class LauncherThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new LauncherThread(r, "wildfly-launcher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class LauncherThread extends Thread {
+        private LauncherThread(final Runnable r, final String name) {
+            super(r, name);
+        }
+    }
+}
@@ -9,9 +9,14 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.ProcessBuilder.Redirect;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
 /**
  * Builds a {@link java.lang.Process process} to launch a standalone or domain server based on the {@link
  * org.wildfly.core.launcher.CommandBuilder command builder}.
@@ -27,8 +32,10 @@ public class Launcher {
     private final CommandBuilder builder;
     private boolean redirectErrorStream;
     private Redirect outputDestination;
+    private RollingFileOutput rollingOutput;
     private Redirect errorDestination;
     private File workingDirectory;
+    private OutputCapture outputCapture;
     private final Map<String, String> env;
 
     /**
@@ -62,6 +69,7 @@ public class Launcher {
      */
     public Launcher inherit() {
         outputDestination = Redirect.INHERIT;
+        rollingOutput = null;
         errorDestination = Redirect.INHERIT;
         return this;
     }
@@ -91,6 +99,7 @@ public class Launcher {
      */
     public Launcher redirectOutput(final File file) {
         outputDestination = Redirect.to(file);
+        rollingOutput = null;
         return this;
     }
 
@@ -118,6 +127,28 @@ public class Launcher {
      */
     public Launcher redirectOutput(final Redirect destination) {
         outputDestination = destination;
+        rollingOutput = null;
+        return this;
+    }
+
+    /**
+     * Redirects the output of the process to a file which is rolled once it reaches a maximum size.
+     * <p>
+     * The output is consumed by this launcher and the {@linkplain Process#getInputStream() input stream} of the
+     * launched process must not be read. If no {@linkplain #redirectError(Redirect) error destination} was set the
+     * error stream is redirected to the output stream.
+     * </p>
+     *
+     * @param destination the rolling file to write the output to
+     *
+     * @return the launcher
+     */
+    public Launcher redirectOutput(final RollingFileOutput destination) {
+        if (destination == null) {
+            throw LauncherMessages.MESSAGES.nullParam("destination");
+        }
+        rollingOutput = destination;
+        outputDestination = null;
         return this;
     }
 
@@ -150,6 +181,25 @@ public class Launcher {
         return this;
     }
 
+    /**
+     * Captures the most recent output of the process. The output is still written to the
+     * {@linkplain #redirectOutput(Redirect) output destination}.
+     * <p>
+     * When the output is captured it is consumed by this launcher and the {@linkplain Process#getInputStream() input
+     * stream} of the launched process must not be read. If no {@linkplain #redirectError(Redirect) error destination}
+     * was set the error stream is redirected to the output stream, otherwise the error stream is written to both the
+     * error destination and the capture.
+     * </p>
+     *
+     * @param capture the capture to write the output to or {@code null} to not capture the output
+     *
+     * @return the launcher
+     */
+    public Launcher captureOutput(final OutputCapture capture) {
+        outputCapture = capture;
+        return this;
+    }
+
     /**
      * Sets the working directory for the process created.
      *
@@ -228,16 +278,156 @@ public class Launcher {
 
     /**
      * Launches a new process based on the commands from the {@link org.wildfly.core.launcher.CommandBuilder builder}.
+     * If the output is {@linkplain #captureOutput(OutputCapture) captured} the output is consumed in the background.
+     * If the builder uses an {@linkplain StandaloneCommandBuilder#setAotCacheDirectory(Path) ahead-of-time cache}
+     * which has not been created yet, this method returns once the cache has been trained.
      *
      * @return the newly created process
      *
      * @throws IOException if an error occurs launching the process
      */
     public Process launch() throws IOException {
-        final ProcessBuilder processBuilder = new ProcessBuilder(builder.build());
-        if (outputDestination != null) {
-            processBuilder.redirectOutput(outputDestination);
+        final AotCache aotCache = AotCache.of(builder);
+        if (aotCache != null) {
+            aotCache.train(builder, workingDirectory, env);
+        }
+        final ProcessBuilder processBuilder = createProcessBuilder();
+        if (outputCapture == null && rollingOutput == null) {
+            if (outputDestination != null) {
+                processBuilder.redirectOutput(outputDestination);
+            }
+            processBuilder.redirectErrorStream(redirectErrorStream);
+            return processBuilder.start();
         }
+        final RedirectSink.Opener error = pipeOutput(processBuilder);
+        final Process process;
+        RedirectSink out = null;
+        RedirectSink err = null;
+        try {
+            out = outputOpener().open();
+            if (error != null) {
+                err = error.open();
+            }
+            process = processBuilder.start();
+        } catch (IOException | RuntimeException e) {
+            RedirectSink.close(out);
+            RedirectSink.close(err);
+            throw e;
+        }
+        OutputPump.getInstance().register(process.getInputStream(), process, out);
+        if (err != null) {
+            OutputPump.getInstance().register(process.getErrorStream(), process, err);
+        }
+        return process;
+    }
+
+    /**
+     * Launches a new process in the background based on the commands from the
+     * {@link org.wildfly.core.launcher.CommandBuilder builder}. The returned handle provides futures which complete
+     * once the process has started, once the server has booted and once the process has exited.
+     * <p>
+     * The output of the process is consumed by the handle and written to the
+     * {@linkplain #redirectOutput(Redirect) output destination}. If no output destination was set the output is
+     * discarded. If no {@linkplain #redirectError(Redirect) error destination} was set the error stream is redirected
+     * to the output stream. The output is also written to the {@linkplain #captureOutput(OutputCapture) capture} if
+     * one was set.
+     * </p>
+     * <p>
+     * If the builder uses an {@linkplain StandaloneCommandBuilder#setAotCacheDirectory(Path) ahead-of-time cache}
+     * which has not been created yet, the cache is trained in the background and the
+     * {@linkplain LaunchHandle#started() started future} completes once the training has finished and the process
+     * has been started.
+     * </p>
+     *
+     * @return the handle for the process
+     */
+    public LaunchHandle launchAsync() {
+        return launchAsync(new LaunchHandle());
+    }
+
+    /**
+     * Launches new processes in the background for each of the builders. At most {@code maxConcurrentBoots} servers
+     * are booting at the same time, the remaining servers are launched as the booting servers complete. The output of
+     * the processes is discarded.
+     *
+     * @param builders           the builders to launch the processes for
+     * @param maxConcurrentBoots the maximum number of servers booting at the same time
+     *
+     * @return the handle for the launched processes
+     *
+     * @see FleetLauncher
+     */
+    public static FleetHandle launchAll(final Collection<? extends CommandBuilder> builders, final int maxConcurrentBoots) {
+        if (builders == null) {
+            throw LauncherMessages.MESSAGES.nullParam("builders");
+        }
+        final List<Launcher> launchers = new ArrayList<>(builders.size());
+        for (CommandBuilder builder : builders) {
+            launchers.add(Launcher.of(builder));
+        }
+        return FleetLauncher.of(launchers)
+                .setMaxConcurrentBoots(maxConcurrentBoots)
+                .launch();
+    }
+
+    LaunchHandle launchAsync(final LaunchHandle handle) {
+        final ProcessBuilder processBuilder = createProcessBuilder();
+        // The output is consumed by the handle to find out when the server has booted
+        final RedirectSink.Opener error = pipeOutput(processBuilder);
+        final AotCache aotCache = AotCache.of(builder);
+        if (aotCache == null) {
+            return handle.start(processBuilder, outputOpener(), error);
+        }
+        // Training the cache launches the server and may take minutes, train in the background and build the command
+        // again so it uses the cache
+        final File workingDirectory = this.workingDirectory;
+        final Map<String, String> env = new HashMap<>(this.env);
+        return handle.start(() -> {
+            aotCache.train(builder, workingDirectory, env);
+            return processBuilder.command(builder.build());
+        }, outputOpener(), error);
+    }
+
+    /**
+     * Pipes the output of the process so it can be consumed by the {@link OutputPump}. The error stream is redirected
+     * to the output stream if no error destination was set. If the output is captured the error stream is also piped.
+     *
+     * @param processBuilder the process builder
+     *
+     * @return the opener for the destination of the piped error stream or {@code null} if the error stream is not
+     * piped
+     */
+    private RedirectSink.Opener pipeOutput(final ProcessBuilder processBuilder) {
+        processBuilder.redirectOutput(Redirect.PIPE);
+        final boolean mergeError = redirectErrorStream || errorDestination == null;
+        processBuilder.redirectErrorStream(mergeError);
+        if (!mergeError && outputCapture != null) {
+            processBuilder.redirectError(Redirect.PIPE);
+            final Redirect destination = errorDestination;
+            final OutputCapture capture = outputCapture;
+            return () -> RedirectSink.error(destination, capture);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the opener for the current output destination. The opener may be invoked after this launcher has been
+     * changed.
+     *
+     * @return the opener for the output destination
+     */
+    private RedirectSink.Opener outputOpener() {
+        final OutputCapture capture = outputCapture;
+        if (rollingOutput != null) {
+            final RollingFileOutput destination = rollingOutput;
+            return () -> RedirectSink.output(destination, capture);
+        }
+        final Redirect destination = outputDestination;
+        return () -> RedirectSink.output(destination, capture);
+    }
+
+    private ProcessBuilder createProcessBuilder() {
+        final ProcessBuilder processBuilder = new ProcessBuilder(builder.build());
         if (errorDestination != null) {
             processBuilder.redirectError(errorDestination);
         }
@@ -247,7 +437,6 @@ public class Launcher {
         if (!env.isEmpty()) {
             processBuilder.environment().putAll(env);
         }
-        processBuilder.redirectErrorStream(redirectErrorStream);
-        return processBuilder.start();
+        return processBuilder;
     }
 }
@@ -0,0 +1,332 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * Watches a file the output of a server is written to for the messages WildFly logs once the server has booted. The
+ * file can be the {@linkplain Launcher#redirectOutput(Path) redirected output} of the process or a log file of the
+ * server, for example the {@code server.log} in the {@linkplain StandaloneCommandBuilder#getLogDirectory() log
+ * directory}.
+ * <p>
+ * A log file of the server, which is appended to each time the server boots, should be {@linkplain #watch(Path)
+ * watched} before the server is launched so only the bytes appended to the file are read. As the file the output is
+ * redirected to is truncated when the process is launched, it should be {@linkplain #watchFromStart(Path) watched from
+ * the start} once the process has been launched. If the size of the file becomes smaller than what has been read, or
+ * the file is replaced, for example when a log file is rotated, the file is read again from the beginning.
+ * </p>
+ * <p>
+ * All files are watched by a single background thread. The thread is notified of changes by a {@link WatchService}
+ * and reads the new bytes of the changed files. As some file systems do not report changes, every file is also read
+ * periodically. Once the server has booted or failed to boot the file is no longer watched. The thread exits when no
+ * file is watched.
+ * </p>
+ *
+ * <pre>
+ *     final Path serverLog = builder.getLogDirectory().resolve("server.log");
+ *     try (LogFileWatcher watcher = LogFileWatcher.watch(serverLog)) {
+ *         Launcher.of(builder).redirectOutput(Redirect.DISCARD).launch();
+ *         watcher.booted().get(60, TimeUnit.SECONDS);
+ *     }
+ *
+ *     Launcher.of(builder).redirectOutput(stdout).launch();
+ *     try (LogFileWatcher watcher = LogFileWatcher.watchFromStart(stdout)) {
+ *         watcher.booted().get(60, TimeUnit.SECONDS);
+ *     }
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class LogFileWatcher implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 500L;
+
+    private static class TailerHolder {
+        static final Tailer TAILER = new Tailer();
+    }
+
+    private final Path file;
+    private final CompletableFuture<Path> booted;
+    private final BootMarkerDetector detector;
+    private final ByteBuffer buffer;
+    private long position;
+    private Object fileKey;
+    private volatile boolean bootedWithErrors;
+
+    private LogFileWatcher(final Path file) {
+        this.file = file;
+        booted = new CompletableFuture<>();
+        detector = new BootMarkerDetector();
+        buffer = ByteBuffer.allocate(8192);
+    }
+
+    /**
+     * Starts watching the file for bytes appended after this method is invoked. The file does not need to exist.
+     *
+     * @param file the file to watch
+     *
+     * @return the watcher
+     */
+    public static LogFileWatcher watch(final Path file) {
+        return watch(file, false);
+    }
+
+    /**
+     * Starts watching the file reading it from the beginning. The file does not need to exist.
+     *
+     * @param file the file to watch
+     *
+     * @return the watcher
+     */
+    public static LogFileWatcher watchFromStart(final Path file) {
+        return watch(file, true);
+    }
+
+    private static LogFileWatcher watch(final Path file, final boolean fromStart) {
+        if (file == null) {
+            throw LauncherMessages.MESSAGES.nullParam("file");
+        }
+        final LogFileWatcher watcher = new LogFileWatcher(file.toAbsolutePath().normalize());
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(watcher.file, BasicFileAttributes.class);
+            watcher.position = fromStart ? 0L : attributes.size();
+            watcher.fileKey = attributes.fileKey();
+        } catch (IOException ignore) {
+            // The file does not exist yet and will be read from the beginning
+        }
+        TailerHolder.TAILER.register(watcher);
+        return watcher;
+    }
+
+    /**
+     * Returns the file being watched.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns a future which is completed once the server has booted. A server which booted with errors is considered
+     * booted.
+     *
+     * @return a future completed with the file or exceptionally if the server logged that it stopped or failed to boot
+     */
+    public CompletableFuture<Path> booted() {
+        return booted.copy();
+    }
+
+    /**
+     * Indicates whether the server logged that it booted with errors, {@code WFLYSRV0026}.
+     *
+     * @return {@code true} if the server booted with errors
+     */
+    public boolean isBootedWithErrors() {
+        return bootedWithErrors;
+    }
+
+    /**
+     * Stops watching the file. If the server has not booted the {@linkplain #booted() booted future} is cancelled.
+     */
+    @Override
+    public void close() {
+        TailerHolder.TAILER.unregister(this);
+        booted.cancel(false);
+    }
+
+    /**
+     * Reads the bytes appended to the file since the last read.
+     *
+     * @return {@code true} if the boot status was found and the file no longer needs to be watched
+     */
+    private boolean readAppended() {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final long size = channel.size();
+            if (size < position || (fileKey != null && !fileKey.equals(attributes.fileKey()))) {
+                // The file was truncated or replaced
+                position = 0L;
+            }
+            fileKey = attributes.fileKey();
+            while (position < size) {
+                buffer.clear();
+                final int len = channel.read(buffer, position);
+                if (len <= 0) {
+                    break;
+                }
+                position += len;
+                final BootMarkerDetector.Status status = detector.update(buffer.array(), 0, len);
+                if (status != null) {
+                    if (status.isStarted()) {
+                        bootedWithErrors = status == BootMarkerDetector.Status.STARTED_WITH_ERRORS;
+                        booted.complete(file);
+                    } else {
+                        booted.completeExceptionally(LauncherMessages.MESSAGES.serverBootFailed(status.getMessageId()));
+                    }
+                    return true;
+                }
+            }
+        } catch (NoSuchFileException ignore) {
+            // The file has not been created yet
+            position = 0L;
+            fileKey = null;
+        } catch (IOException e) {
+            booted.completeExceptionally(e);
+            return true;
+        }
+        return booted.isDone();
+    }
+
+    /**
+     * A single thread watching the directories of all the files being watched. The thread is stopped and the watch
+     * service closed once no file is watched and started again when the next file is watched.
+     */
+    private static class Tailer {
+        private final Set<LogFileWatcher> watchers;
+        private final Map<Path, WatchKey> keys;
+        private WatchService watchService;
+        private Thread thread;
+
+        private Tailer() {
+            watchers = ConcurrentHashMap.newKeySet();
+            keys = new HashMap<>();
+        }
+
+        synchronized void register(final LogFileWatcher watcher) {
+            watchers.add(watcher);
+            if (thread == null) {
+                try {
+                    watchService = FileSystems.getDefault().newWatchService();
+                } catch (IOException | UnsupportedOperationException ignore) {
+                    // Files are only read periodically
+                    watchService = null;
+                }
+                final WatchService service = watchService;
+                thread = new Thread(() -> run(service), "wildfly-launcher-log-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            registerDirectory(watcher.file.getParent());
+        }
+
+        synchronized void unregister(final LogFileWatcher watcher) {
+            watchers.remove(watcher);
+            final Path dir = watcher.file.getParent();
+            if (watchers.stream().noneMatch(w -> Objects.equals(w.file.getParent(), dir))) {
+                final WatchKey key = keys.remove(dir);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+            if (watchers.isEmpty() && thread != null) {
+                // The thread exits once the watch service is closed or it notices it was replaced
+                keys.clear();
+                if (watchService != null) {
+                    try {
+                        watchService.close();
+                    } catch (IOException ignore) {
+                    }
+                    watchService = null;
+                }
+                thread = null;
+            }
+        }
+
+        private synchronized boolean isCurrent() {
+            return thread == Thread.currentThread();
+        }
+
+        private void run(final WatchService watchService) {
+            long nextFullPass = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+            while (isCurrent()) {
+                final Set<LogFileWatcher> toRead = new LinkedHashSet<>();
+                WatchKey key = null;
+                try {
+                    final long remaining = Math.max(0L, nextFullPass - System.nanoTime());
+                    if (watchService == null) {
+                        TimeUnit.NANOSECONDS.sleep(remaining);
+                    } else {
+                        key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                if (key != null) {
+                    final Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            toRead.addAll(watchers);
+                        } else {
+                            final Path changed = dir.resolve((Path) event.context());
+                            for (LogFileWatcher watcher : watchers) {
+                                if (watcher.file.equals(changed)) {
+                                    toRead.add(watcher);
+                                }
+                            }
+                        }
+                    }
+                    key.reset();
+                }
+                if (System.nanoTime() - nextFullPass >= 0L) {
+                    // Read every file and retry registering directories which did not exist on a fixed schedule, even
+                    // if other directories keep reporting events
+                    toRead.addAll(watchers);
+                    synchronized (this) {
+                        if (thread != Thread.currentThread()) {
+                            return;
+                        }
+                        for (LogFileWatcher watcher : watchers) {
+                            registerDirectory(watcher.file.getParent());
+                        }
+                    }
+                    nextFullPass = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+                }
+                for (LogFileWatcher watcher : toRead) {
+                    if (watchers.contains(watcher) && watcher.readAppended()) {
+                        unregister(watcher);
+                    }
+                }
+            }
+        }
+
+        private void registerDirectory(final Path dir) {
+            if (watchService == null || dir == null || keys.containsKey(dir) || !Files.isDirectory(dir)) {
+                return;
+            }
+            try {
+                keys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+            } catch (IOException | RuntimeException ignore) {
+                // The file in this directory is only read periodically
+            }
+        }
+    }
+}
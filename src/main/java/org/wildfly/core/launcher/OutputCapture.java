@@ -0,0 +1,137 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * Keeps the most recent output of a process in a fixed size buffer allocated outside the heap. Once the buffer is
+ * full the oldest bytes are overwritten, the memory used does not depend on how much output the process writes.
+ * <p>
+ * A capture should only be used for a single process. A snapshot can be taken at any time, for example once the
+ * server failed to boot or the process has exited.
+ * </p>
+ *
+ * <pre>
+ *     final OutputCapture capture = OutputCapture.of(256 * 1024);
+ *     final LaunchHandle handle = Launcher.of(builder)
+ *             .captureOutput(capture)
+ *             .launchAsync();
+ *     handle.booted().exceptionally(error -&gt; {
+ *         report(error, capture.snapshot(StandardCharsets.UTF_8));
+ *         return null;
+ *     });
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class OutputCapture {
+
+    private final ByteBuffer buffer;
+    private long totalBytes;
+
+    private OutputCapture(final int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Creates a new capture keeping the last {@code capacity} bytes of output.
+     *
+     * @param capacity the number of bytes to keep
+     *
+     * @return the new capture
+     */
+    public static OutputCapture of(final int capacity) {
+        if (capacity < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("capacity", capacity);
+        }
+        return new OutputCapture(capacity);
+    }
+
+    /**
+     * Returns the maximum number of bytes kept.
+     *
+     * @return the capacity of the capture
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns the number of bytes written to the capture, including the bytes which have been overwritten.
+     *
+     * @return the number of bytes written
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns a copy of the bytes kept, the oldest byte first.
+     *
+     * @return the last bytes of the output
+     */
+    public synchronized byte[] snapshot() {
+        final int position = buffer.position();
+        final ByteBuffer view = buffer.duplicate();
+        if (totalBytes <= buffer.capacity()) {
+            final byte[] result = new byte[position];
+            view.flip();
+            view.get(result);
+            return result;
+        }
+        final byte[] result = new byte[buffer.capacity()];
+        final int tail = buffer.capacity() - position;
+        view.position(position).limit(buffer.capacity());
+        view.get(result, 0, tail);
+        view.position(0).limit(position);
+        view.get(result, tail, position);
+        return result;
+    }
+
+    /**
+     * Returns the bytes kept decoded with the character set. The first character may be incomplete if the oldest
+     * bytes have been overwritten.
+     *
+     * @param charset the character set the process writes its output in
+     *
+     * @return the last output
+     */
+    public String snapshot(final Charset charset) {
+        return new String(snapshot(), charset);
+    }
+
+    /**
+     * Writes the bytes to the buffer overwriting the oldest bytes once the buffer is full.
+     *
+     * @param bytes  the bytes to write
+     * @param offset the offset of the first byte
+     * @param length the number of bytes to write
+     */
+    synchronized void write(final byte[] bytes, final int offset, final int length) {
+        totalBytes += length;
+        int off = offset;
+        int len = length;
+        if (len >= buffer.capacity()) {
+            // Only the last bytes fit in the buffer
+            off += len - buffer.capacity();
+            len = buffer.capacity();
+            buffer.clear();
+        }
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+            }
+            final int count = Math.min(len, buffer.remaining());
+            buffer.put(bytes, off, count);
+            off += count;
+            len -= count;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Consumes the output streams of many processes from a small number of threads.
+ * <p>
+ * The pipes of a process can not be registered with a {@link java.nio.channels.Selector}. Instead each thread polls
+ * the streams assigned to it, reading only the bytes {@linkplain InputStream#available() available} so a read never
+ * blocks. When none of the streams of a thread have bytes available the thread parks, backing off up to
+ * {@value #MAX_PARK_MILLIS} milliseconds. A thread with no streams assigned parks until a stream is assigned. Each
+ * thread reads into a single buffer which is reused for all its streams.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class OutputPump {
+
+    private static final long MIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final long MAX_PARK_MILLIS = 20L;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_PARK_MILLIS);
+    private static final int BUFFER_SIZE = 8192;
+
+    private static class InstanceHolder {
+        static final OutputPump INSTANCE = new OutputPump(Math.max(1, Math.min(4,
+                Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    /**
+     * Receives the output of a stream.
+     */
+    interface Sink {
+
+        /**
+         * Receives bytes read from the stream. The bytes are only valid until this method returns.
+         *
+         * @param bytes  the buffer containing the bytes
+         * @param offset the offset of the first byte read
+         * @param length the number of bytes read
+         */
+        void write(byte[] bytes, int offset, int length);
+
+        /**
+         * Invoked once all the output of the stream has been read.
+         */
+        void close();
+    }
+
+    private final Worker[] workers;
+
+    private OutputPump(final int threads) {
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker("wildfly-launcher-output-" + (i + 1));
+        }
+    }
+
+    /**
+     * Returns the pump shared by all the processes launched in this JVM.
+     *
+     * @return the shared pump
+     */
+    static OutputPump getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Starts consuming the stream. The stream is closed and the sink is {@linkplain Sink#close() closed} once the
+     * process has exited and all the available bytes have been read.
+     *
+     * @param in      the output stream of the process
+     * @param process the process writing to the stream
+     * @param sink    the sink receiving the output
+     */
+    void register(final InputStream in, final Process process, final Sink sink) {
+        Worker worker = workers[0];
+        for (int i = 1; i < workers.length; i++) {
+            if (workers[i].count.get() < worker.count.get()) {
+                worker = workers[i];
+            }
+        }
+        worker.add(new Source(in, process, sink));
+    }
+
+    private static class Source {
+        private final InputStream in;
+        private final Process process;
+        private final Sink sink;
+
+        private Source(final InputStream in, final Process process, final Sink sink) {
+            this.in = in;
+            this.process = process;
+            this.sink = sink;
+        }
+
+        /**
+         * Reads the bytes available without blocking.
+         *
+         * @param buffer the buffer to read into
+         *
+         * @return the number of bytes read or {@code -1} if the output has been consumed
+         */
+        int read(final byte[] buffer) {
+            try {
+                int available = in.available();
+                if (available == 0) {
+                    if (process.isAlive()) {
+                        return 0;
+                    }
+                    // The process has exited, check the bytes written before it exited
+                    available = in.available();
+                    if (available == 0) {
+                        close();
+                        return -1;
+                    }
+                }
+                final int len = in.read(buffer, 0, Math.min(available, buffer.length));
+                if (len < 0) {
+                    close();
+                    return -1;
+                }
+                try {
+                    sink.write(buffer, 0, len);
+                } catch (RuntimeException ignore) {
+                    // A failing sink must not stop the output from being consumed
+                }
+                return len;
+            } catch (IOException e) {
+                // The stream was closed
+                close();
+                return -1;
+            }
+        }
+
+        private void close() {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+            try {
+                sink.close();
+            } catch (RuntimeException ignore) {
+            }
+        }
+    }
+
+    private static class Worker implements Runnable {
+        private final Queue<Source> added;
+        private final AtomicInteger count;
+        private final Thread thread;
+
+        private Worker(final String name) {
+            added = new ConcurrentLinkedQueue<>();
+            count = new AtomicInteger();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void add(final Source source) {
+            count.incrementAndGet();
+            added.add(source);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            final List<Source> sources = new ArrayList<>();
+            long parkNanos = MIN_PARK_NANOS;
+            while (true) {
+                Source source;
+                while ((source = added.poll()) != null) {
+                    sources.add(source);
+                }
+                if (sources.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                boolean read = false;
+                final Iterator<Source> iter = sources.iterator();
+                while (iter.hasNext()) {
+                    final Source next = iter.next();
+                    final int len = next.read(buffer);
+                    if (len < 0) {
+                        iter.remove();
+                        count.decrementAndGet();
+                    } else if (len > 0) {
+                        read = true;
+                    }
+                }
+                if (read) {
+                    parkNanos = MIN_PARK_NANOS;
+                } else {
+                    LockSupport.parkNanos(this, parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                }
+            }
+        }
+    }
+}
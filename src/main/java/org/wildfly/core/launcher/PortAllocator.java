@@ -0,0 +1,300 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * Allocates a {@code jboss.socket.binding.port-offset} and a debug port for servers launched in parallel on the same
+ * host.
+ * <p>
+ * An offset is only allocated if every port of the socket binding group, plus the offset, can be bound on the host.
+ * The allocated ports are reserved until the {@linkplain Allocation#close() allocation is closed} so concurrent
+ * allocations in this JVM never allocate the same ports, even before the servers have bound them. Ports bound by
+ * other processes between the allocation and the boot of the server can not be prevented.
+ * </p>
+ *
+ * <p>
+ * The allocation should be closed once the process has exited, closing it while the server is running allows another
+ * allocation to use the ports of the server.
+ * </p>
+ *
+ * <pre>
+ *     final PortAllocator.Allocation allocation = PortAllocator.getDefault().allocate(builder, true);
+ *     final Process process;
+ *     try {
+ *         process = Launcher.of(builder).launch();
+ *     } catch (IOException | RuntimeException e) {
+ *         allocation.close();
+ *         throw e;
+ *     }
+ *     process.onExit().whenComplete((exited, error) -&gt; allocation.close());
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class PortAllocator {
+
+    /**
+     * The ports of the {@code standard-sockets} socket binding group without an offset.
+     */
+    public static final Set<Integer> STANDARD_PORTS = Set.of(8009, 8080, 8443, 9990, 9993, 4712, 4713);
+
+    /**
+     * The first port tried for the debug port.
+     */
+    public static final int DEFAULT_DEBUG_PORT = 8787;
+
+    private static final String PORT_OFFSET_PROPERTY = "jboss.socket.binding.port-offset";
+    private static final int MAX_PORT = 65535;
+    // All the ports reserved by allocations in this JVM
+    private static final Set<Integer> RESERVED = new HashSet<>();
+
+    private static class DefaultHolder {
+        static final PortAllocator INSTANCE = new PortAllocator(new TreeSet<>(STANDARD_PORTS), 100, DEFAULT_DEBUG_PORT);
+    }
+
+    private final NavigableSet<Integer> ports;
+    private final int offsetIncrement;
+    private final int debugPort;
+
+    private PortAllocator(final NavigableSet<Integer> ports, final int offsetIncrement, final int debugPort) {
+        this.ports = ports;
+        this.offsetIncrement = offsetIncrement;
+        this.debugPort = debugPort;
+    }
+
+    /**
+     * Returns an allocator for the {@linkplain #STANDARD_PORTS standard ports} which allocates offsets in increments
+     * of {@code 100} and debug ports starting at {@value #DEFAULT_DEBUG_PORT}.
+     *
+     * @return the default allocator
+     */
+    public static PortAllocator getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Creates an allocator for the ports of a socket binding group.
+     *
+     * @param ports           the ports of the socket binding group without an offset
+     * @param offsetIncrement the difference between two offsets tried
+     * @param debugPort       the first port tried for the debug port
+     *
+     * @return the allocator
+     */
+    public static PortAllocator of(final Collection<Integer> ports, final int offsetIncrement, final int debugPort) {
+        if (ports == null || ports.isEmpty()) {
+            throw LauncherMessages.MESSAGES.nullParam("ports");
+        }
+        if (offsetIncrement < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("offsetIncrement", offsetIncrement);
+        }
+        if (debugPort < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("debugPort", debugPort);
+        }
+        for (Integer port : ports) {
+            if (port == null || port < 1) {
+                throw LauncherMessages.MESSAGES.notPositive("port", port == null ? 0 : port);
+            }
+        }
+        return new PortAllocator(new TreeSet<>(ports), offsetIncrement, debugPort);
+    }
+
+    /**
+     * Allocates a port offset and optionally a debug port.
+     *
+     * @param debug {@code true} to allocate a debug port
+     *
+     * @return the allocation which must be closed to release the ports
+     */
+    public Allocation allocate(final boolean debug) {
+        synchronized (RESERVED) {
+            final int offset = findOffset();
+            final List<Integer> reserved = new ArrayList<>(ports.size() + 1);
+            for (Integer port : ports) {
+                reserved.add(port + offset);
+            }
+            RESERVED.addAll(reserved);
+            int allocatedDebugPort = -1;
+            if (debug) {
+                try {
+                    allocatedDebugPort = findPort(debugPort);
+                } catch (RuntimeException e) {
+                    RESERVED.removeAll(reserved);
+                    throw e;
+                }
+                RESERVED.add(allocatedDebugPort);
+                reserved.add(allocatedDebugPort);
+            }
+            return new Allocation(offset, allocatedDebugPort, reserved);
+        }
+    }
+
+    /**
+     * Allocates a port offset, and optionally a debug port, and sets them on the builder. The debug port is set
+     * without suspending the JVM.
+     *
+     * @param builder the builder to set the port offset and debug port on
+     * @param debug   {@code true} to allocate a debug port
+     *
+     * @return the allocation which must be closed to release the ports
+     */
+    public Allocation allocate(final StandaloneCommandBuilder builder, final boolean debug) {
+        if (builder == null) {
+            throw LauncherMessages.MESSAGES.nullParam("builder");
+        }
+        final Allocation allocation = allocate(debug);
+        builder.addJavaOption(allocation.getPortOffsetArgument());
+        if (debug) {
+            builder.setDebug(allocation.getDebugPort());
+        }
+        return allocation;
+    }
+
+    /**
+     * Allocates a port offset, and optionally a debug port, and sets them on the builder. The debug port is set
+     * without suspending the JVM.
+     *
+     * @param builder the builder to set the port offset and debug port on
+     * @param debug   {@code true} to allocate a debug port
+     *
+     * @return the allocation which must be closed to release the ports
+     */
+    public Allocation allocate(final BootableJarCommandBuilder builder, final boolean debug) {
+        if (builder == null) {
+            throw LauncherMessages.MESSAGES.nullParam("builder");
+        }
+        final Allocation allocation = allocate(debug);
+        builder.addJavaOption(allocation.getPortOffsetArgument());
+        if (debug) {
+            builder.setDebug(allocation.getDebugPort());
+        }
+        return allocation;
+    }
+
+    private int findOffset() {
+        final int highest = ports.last();
+        for (int offset = 0; highest + offset <= MAX_PORT; offset += offsetIncrement) {
+            if (isAvailable(offset)) {
+                return offset;
+            }
+        }
+        throw LauncherMessages.MESSAGES.noPortOffsetAvailable(ports);
+    }
+
+    private boolean isAvailable(final int offset) {
+        for (Integer port : ports) {
+            if (RESERVED.contains(port + offset)) {
+                return false;
+            }
+        }
+        for (Integer port : ports) {
+            if (!canBind(port + offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int findPort(final int start) {
+        for (int port = start; port <= MAX_PORT; port++) {
+            if (!RESERVED.contains(port) && canBind(port)) {
+                return port;
+            }
+        }
+        throw LauncherMessages.MESSAGES.noPortAvailable(start);
+    }
+
+    private static boolean canBind(final int port) {
+        // Bind to the wildcard address so a port bound to any interface is considered in use
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException ignore) {
+            return false;
+        }
+    }
+
+    /**
+     * The ports allocated for a server.
+     */
+    public static final class Allocation implements AutoCloseable {
+        private final int portOffset;
+        private final int debugPort;
+        private final List<Integer> reserved;
+        private boolean closed;
+
+        private Allocation(final int portOffset, final int debugPort, final List<Integer> reserved) {
+            this.portOffset = portOffset;
+            this.debugPort = debugPort;
+            this.reserved = Collections.unmodifiableList(reserved);
+        }
+
+        /**
+         * Returns the allocated port offset.
+         *
+         * @return the port offset
+         */
+        public int getPortOffset() {
+            return portOffset;
+        }
+
+        /**
+         * Returns the system property argument which sets the port offset, for example
+         * {@code -Djboss.socket.binding.port-offset=100}.
+         *
+         * @return the port offset argument
+         */
+        public String getPortOffsetArgument() {
+            return "-D" + PORT_OFFSET_PROPERTY + "=" + portOffset;
+        }
+
+        /**
+         * Returns the allocated debug port.
+         *
+         * @return the debug port or {@code -1} if no debug port was allocated
+         */
+        public int getDebugPort() {
+            return debugPort;
+        }
+
+        /**
+         * Returns all the ports reserved by this allocation, including the debug port.
+         *
+         * @return the reserved ports
+         */
+        public List<Integer> getPorts() {
+            return reserved;
+        }
+
+        /**
+         * Releases the reserved ports so they can be allocated again. This should be invoked once the server has
+         * stopped.
+         */
+        @Override
+        public void close() {
+            synchronized (RESERVED) {
+                if (!closed) {
+                    closed = true;
+                    RESERVED.removeAll(reserved);
+                }
+            }
+        }
+    }
+}
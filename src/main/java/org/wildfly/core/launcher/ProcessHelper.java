@@ -5,6 +5,20 @@
 
 package org.wildfly.core.launcher;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
 /**
  * A helper class to help with managing a process.
  *
@@ -12,6 +26,15 @@ package org.wildfly.core.launcher;
  */
 public class ProcessHelper {
 
+    /**
+     * The system property for the number of milliseconds the shutdown hook waits for the processes
+     * {@linkplain #destroyOnShutdown(Process) destroyed on shutdown} to exit.
+     */
+    public static final String SHUTDOWN_TIMEOUT_PROPERTY = "wildfly.launcher.shutdown.timeout";
+
+    // The time to wait for the processes to exit after they have been forcibly killed
+    private static final long KILL_TIMEOUT_SECONDS = 10L;
+
     /**
      * Checks to see if the process has died.
      *
@@ -40,6 +63,112 @@ public class ProcessHelper {
         return process.waitFor();
     }
 
+    /**
+     * Terminates the process and all its descendants, for example the host controller and servers of a domain. See
+     * {@link #terminate(ProcessHandle, long, TimeUnit)}.
+     *
+     * @param process the process to terminate
+     * @param timeout the time to wait for the processes to exit before they are forcibly killed
+     * @param unit    the unit of the timeout
+     *
+     * @return what happened to each process
+     *
+     * @throws InterruptedException if interrupted while waiting for the processes to exit
+     */
+    public static ProcessTermination terminate(final Process process, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return terminate(process.toHandle(), timeout, unit);
+    }
+
+    /**
+     * Terminates the process and all its descendants.
+     * <p>
+     * The descendants are collected before any process is terminated, as a descendant is no longer reported once its
+     * parent has exited. All the processes are asked to terminate normally at the same time. The processes which have
+     * not exited once the timeout has elapsed, including descendants started while terminating, are forcibly killed.
+     * The method returns once all the processes have exited or, at the latest, after the timeout plus 10 seconds.
+     * </p>
+     *
+     * @param process the process to terminate
+     * @param timeout the time to wait for the processes to exit before they are forcibly killed
+     * @param unit    the unit of the timeout
+     *
+     * @return what happened to each process
+     *
+     * @throws InterruptedException if interrupted while waiting for the processes to exit
+     */
+    public static ProcessTermination terminate(final ProcessHandle process, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final Map<Long, ProcessHandle> handles = new LinkedHashMap<>();
+        final Map<Long, ProcessTermination.Outcome> outcomes = new LinkedHashMap<>();
+        collect(process, handles);
+        for (ProcessHandle handle : handles.values()) {
+            if (!handle.isAlive()) {
+                outcomes.put(handle.pid(), ProcessTermination.Outcome.EXITED);
+            } else if (handle.supportsNormalTermination()) {
+                handle.destroy();
+            } else {
+                handle.destroyForcibly();
+            }
+        }
+        await(handles.values(), unit.toNanos(timeout));
+
+        // Kill the processes still alive, including any started while the processes were terminating
+        collect(process, handles);
+        for (ProcessHandle handle : handles.values()) {
+            if (outcomes.containsKey(handle.pid())) {
+                continue;
+            }
+            if (handle.isAlive()) {
+                handle.destroyForcibly();
+            } else {
+                outcomes.put(handle.pid(), ProcessTermination.Outcome.TERMINATED);
+            }
+        }
+        await(handles.values(), TimeUnit.SECONDS.toNanos(KILL_TIMEOUT_SECONDS));
+        for (ProcessHandle handle : handles.values()) {
+            outcomes.putIfAbsent(handle.pid(), handle.isAlive() ? ProcessTermination.Outcome.ALIVE : ProcessTermination.Outcome.KILLED);
+        }
+        // Keep the order of the processes, the terminated process first
+        final Map<Long, ProcessTermination.Outcome> result = new LinkedHashMap<>();
+        for (Long pid : handles.keySet()) {
+            result.put(pid, outcomes.get(pid));
+        }
+        return new ProcessTermination(result);
+    }
+
+    /**
+     * Destroys the process, and its descendants, when the JVM shuts down. A single shutdown hook is shared by all the
+     * processes and a process is no longer tracked once it exits.
+     * <p>
+     * When the JVM shuts down all the processes still alive are forcibly killed at the same time. The shutdown hook
+     * waits for the processes to exit for at most the number of milliseconds set with the
+     * {@value #SHUTDOWN_TIMEOUT_PROPERTY} system property, which defaults to 10 seconds.
+     * </p>
+     *
+     * @param process the process to destroy
+     *
+     * @return {@code true} if the process was added, {@code false} if the process has already been added or has exited
+     *
+     * @throws java.lang.SecurityException If a security manager is present and it denies {@link
+     *                                     java.lang.RuntimePermission <code>RuntimePermission("shutdownHooks")</code>}
+     */
+    public static boolean destroyOnShutdown(final Process process) {
+        if (process == null) {
+            throw LauncherMessages.MESSAGES.nullParam("process");
+        }
+        return ShutdownRegistry.INSTANCE.add(process);
+    }
+
+    /**
+     * Stops the process from being destroyed when the JVM shuts down.
+     *
+     * @param process the process
+     *
+     * @return {@code true} if the process was {@linkplain #destroyOnShutdown(Process) registered} and alive
+     */
+    public static boolean cancelDestroyOnShutdown(final Process process) {
+        return process != null && ShutdownRegistry.INSTANCE.remove(process);
+    }
+
     /**
      * Adds a shutdown hook for the process.
      *
@@ -49,7 +178,10 @@ public class ProcessHelper {
      *
      * @throws java.lang.SecurityException If a security manager is present and it denies {@link
      *                                     java.lang.RuntimePermission <code>RuntimePermission("shutdownHooks")</code>}
+     * @deprecated this adds a shutdown hook thread for each process, use {@link #destroyOnShutdown(Process)} which
+     * shares a single shutdown hook for all the processes
      */
+    @Deprecated
     public static Thread addShutdownHook(final Process process) {
         final Thread thread = new Thread(() -> {
             if (process != null) {
@@ -65,4 +197,70 @@ public class ProcessHelper {
         Runtime.getRuntime().addShutdownHook(thread);
         return thread;
     }
+
+    private static void collect(final ProcessHandle process, final Map<Long, ProcessHandle> handles) {
+        handles.putIfAbsent(process.pid(), process);
+        process.descendants().forEach(handle -> handles.putIfAbsent(handle.pid(), handle));
+    }
+
+    private static void await(final Collection<ProcessHandle> handles, final long timeoutNanos) throws InterruptedException {
+        final CompletableFuture<?> all = CompletableFuture.allOf(handles.stream()
+                .map(ProcessHandle::onExit)
+                .toArray(CompletableFuture[]::new));
+        try {
+            all.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException ignore) {
+            // The processes still alive are checked by the caller
+        }
+    }
+
+    /**
+     * Tracks the processes destroyed by the single shutdown hook.
+     */
+    private static class ShutdownRegistry implements Runnable {
+        static final ShutdownRegistry INSTANCE = new ShutdownRegistry();
+
+        private final Set<Process> processes;
+        private boolean hookAdded;
+
+        private ShutdownRegistry() {
+            processes = ConcurrentHashMap.newKeySet();
+        }
+
+        boolean add(final Process process) {
+            synchronized (this) {
+                if (!hookAdded) {
+                    final Thread thread = new Thread(this, "wildfly-launcher-shutdown");
+                    thread.setDaemon(true);
+                    Runtime.getRuntime().addShutdownHook(thread);
+                    hookAdded = true;
+                }
+            }
+            if (!process.isAlive() || !processes.add(process)) {
+                return false;
+            }
+            process.onExit().thenRun(() -> processes.remove(process));
+            return true;
+        }
+
+        boolean remove(final Process process) {
+            return processes.remove(process);
+        }
+
+        @Override
+        public void run() {
+            final long timeout = Long.getLong(SHUTDOWN_TIMEOUT_PROPERTY, TimeUnit.SECONDS.toMillis(10L));
+            final List<ProcessHandle> handles = new ArrayList<>();
+            for (Process process : processes) {
+                // Collect the descendants before killing the process as they are no longer reported once it exits
+                process.descendants().forEach(handles::add);
+                handles.add(process.toHandle());
+            }
+            handles.forEach(ProcessHandle::destroyForcibly);
+            try {
+                await(handles, TimeUnit.MILLISECONDS.toNanos(timeout));
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
 }
@@ -0,0 +1,385 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * Supervises launched processes, restarting a process when it exits.
+ * <p>
+ * A process is restarted with the {@link Launcher} it was launched with, the command is built again from the
+ * {@link CommandBuilder} of the launcher. The first restart is delayed by the
+ * {@linkplain #setBackoff(long, long, TimeUnit) initial backoff}, each following restart doubles the delay up to the
+ * maximum backoff. The delay is reset once a process has been running for longer than the crash loop window. A process
+ * exiting with the exit code {@value #RESTART_EXIT_CODE}, which WildFly uses to request a restart, is restarted
+ * without a delay.
+ * </p>
+ * <p>
+ * If a process is restarted more than the {@linkplain #setCrashLoop(int, long, TimeUnit) maximum number of restarts}
+ * within the crash loop window it is considered to be crash looping and is no longer restarted.
+ * </p>
+ * <p>
+ * Exits are detected with {@link Process#onExit()}, the processes are not polled. The restarts of all the supervisors
+ * are scheduled on a single background thread, the processes are {@linkplain Launcher#launchAsync() launched
+ * asynchronously} so a slow launch does not delay the restarts of other processes.
+ * </p>
+ *
+ * <pre>
+ *     try (ProcessSupervisor supervisor = ProcessSupervisor.create().setCrashLoop(5, 10, TimeUnit.MINUTES)) {
+ *         final ProcessSupervisor.Supervised server = supervisor.supervise(Launcher.of(builder));
+ *         ...
+ *         server.terminated().join();
+ *     }
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class ProcessSupervisor implements AutoCloseable {
+
+    /**
+     * The exit code of a WildFly process which requests to be restarted.
+     */
+    public static final int RESTART_EXIT_CODE = 10;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private static class SchedulerHolder {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "wildfly-launcher-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final Set<Supervised> supervised;
+    private long initialBackoffNanos;
+    private long maxBackoffNanos;
+    private int maxRestarts;
+    private long crashLoopWindow;
+    private TimeUnit crashLoopUnit;
+
+    private ProcessSupervisor() {
+        supervised = ConcurrentHashMap.newKeySet();
+        initialBackoffNanos = TimeUnit.SECONDS.toNanos(1L);
+        maxBackoffNanos = TimeUnit.MINUTES.toNanos(1L);
+        maxRestarts = 5;
+        crashLoopWindow = 5L;
+        crashLoopUnit = TimeUnit.MINUTES;
+    }
+
+    /**
+     * Creates a new supervisor. By default the backoff starts at 1 second up to 1 minute and a process restarted more
+     * than 5 times within 5 minutes is considered to be crash looping.
+     *
+     * @return the new supervisor
+     */
+    public static ProcessSupervisor create() {
+        return new ProcessSupervisor();
+    }
+
+    /**
+     * Sets the delay before restarting a process. The settings apply to processes supervised after this is invoked.
+     *
+     * @param initial the delay before the first restart
+     * @param max     the maximum delay before a restart, if less than the initial delay the initial delay is used
+     * @param unit    the unit of the delays
+     *
+     * @return this supervisor
+     */
+    public ProcessSupervisor setBackoff(final long initial, final long max, final TimeUnit unit) {
+        if (initial < 0L) {
+            throw LauncherMessages.MESSAGES.negative("initial", initial);
+        }
+        if (unit == null) {
+            throw LauncherMessages.MESSAGES.nullParam("unit");
+        }
+        initialBackoffNanos = unit.toNanos(initial);
+        maxBackoffNanos = unit.toNanos(Math.max(initial, max));
+        return this;
+    }
+
+    /**
+     * Sets when a process is considered to be crash looping. The settings apply to processes supervised after this is
+     * invoked.
+     *
+     * @param maxRestarts the maximum number of restarts allowed within the window
+     * @param window      the length of the window
+     * @param unit        the unit of the window
+     *
+     * @return this supervisor
+     */
+    public ProcessSupervisor setCrashLoop(final int maxRestarts, final long window, final TimeUnit unit) {
+        if (maxRestarts < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("maxRestarts", maxRestarts);
+        }
+        if (window < 1L) {
+            throw LauncherMessages.MESSAGES.notPositive("window", window);
+        }
+        if (unit == null) {
+            throw LauncherMessages.MESSAGES.nullParam("unit");
+        }
+        this.maxRestarts = maxRestarts;
+        crashLoopWindow = window;
+        crashLoopUnit = unit;
+        return this;
+    }
+
+    /**
+     * Launches the process and supervises it.
+     *
+     * @param launcher the launcher used to launch and restart the process
+     *
+     * @return the supervised process
+     *
+     * @throws IOException if the process could not be launched
+     */
+    public Supervised supervise(final Launcher launcher) throws IOException {
+        if (launcher == null) {
+            throw LauncherMessages.MESSAGES.nullParam("launcher");
+        }
+        final Supervised result = new Supervised(launcher, initialBackoffNanos, maxBackoffNanos, maxRestarts,
+                crashLoopWindow, crashLoopUnit);
+        result.start(launcher.launch());
+        supervised.add(result);
+        result.terminated.whenComplete((exitCode, error) -> supervised.remove(result));
+        return result;
+    }
+
+    /**
+     * Stops supervising all the processes and terminates them.
+     *
+     * @see Supervised#stop()
+     */
+    @Override
+    public void close() {
+        for (Supervised process : supervised) {
+            process.stop();
+        }
+    }
+
+    /**
+     * A process supervised by a {@link ProcessSupervisor}.
+     */
+    public static final class Supervised {
+        private final Launcher launcher;
+        private final long initialBackoffNanos;
+        private final long maxBackoffNanos;
+        private final int maxRestarts;
+        private final long crashLoopWindow;
+        private final TimeUnit crashLoopUnit;
+        private final Deque<Long> restartTimes;
+        private final CompletableFuture<Integer> terminated;
+        private Process process;
+        private long started;
+        private long exited;
+        private boolean down;
+        private long backoffNanos;
+        private int restartCount;
+        private long downtimeNanos;
+        private boolean stopped;
+        private ScheduledFuture<?> pendingRestart;
+
+        private Supervised(final Launcher launcher, final long initialBackoffNanos, final long maxBackoffNanos,
+                           final int maxRestarts, final long crashLoopWindow, final TimeUnit crashLoopUnit) {
+            this.launcher = launcher;
+            this.initialBackoffNanos = initialBackoffNanos;
+            this.maxBackoffNanos = maxBackoffNanos;
+            this.maxRestarts = maxRestarts;
+            this.crashLoopWindow = crashLoopWindow;
+            this.crashLoopUnit = crashLoopUnit;
+            restartTimes = new ArrayDeque<>();
+            terminated = new CompletableFuture<>();
+            backoffNanos = initialBackoffNanos;
+        }
+
+        /**
+         * Returns the current process. While the process is waiting to be restarted the process which exited is
+         * returned.
+         *
+         * @return the current process
+         */
+        public synchronized Process getProcess() {
+            return process;
+        }
+
+        /**
+         * Returns the number of times the process has been restarted.
+         *
+         * @return the number of restarts
+         */
+        public synchronized int getRestartCount() {
+            return restartCount;
+        }
+
+        /**
+         * Returns the total time no process was running between an exit and the following restart, including the
+         * current downtime if the process is waiting to be restarted.
+         *
+         * @param unit the unit to return the downtime in
+         *
+         * @return the total downtime
+         */
+        public synchronized long getDowntime(final TimeUnit unit) {
+            long result = downtimeNanos;
+            if (down) {
+                result += System.nanoTime() - exited;
+            }
+            return unit.convert(result, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Indicates whether the process is no longer restarted because it was crash looping.
+         *
+         * @return {@code true} if the process was crash looping
+         */
+        public boolean isCrashLooping() {
+            return terminated.isCompletedExceptionally();
+        }
+
+        /**
+         * Returns a future which is completed once the process is no longer supervised. The future is completed with
+         * the exit code of the last process if supervision was {@linkplain #stop() stopped}, or exceptionally if the
+         * process was crash looping.
+         *
+         * @return a future completed once the process is no longer supervised
+         */
+        public CompletableFuture<Integer> terminated() {
+            return terminated.copy();
+        }
+
+        /**
+         * Stops supervising the process and terminates it, waiting for it to exit. The process and its descendants are
+         * forcibly killed if they have not exited within 30 seconds.
+         */
+        public void stop() {
+            final Process current;
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                stopped = true;
+                if (pendingRestart != null) {
+                    pendingRestart.cancel(false);
+                }
+                current = process;
+            }
+            try {
+                ProcessHelper.terminate(current, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                current.onExit().thenAccept(p -> terminated.complete(p.exitValue()));
+            }
+        }
+
+        private synchronized void start(final Process process) {
+            this.process = process;
+            started = System.nanoTime();
+            if (down) {
+                downtimeNanos += started - exited;
+                down = false;
+            }
+            process.onExit().whenCompleteAsync((p, error) -> exited(p), SchedulerHolder.SCHEDULER);
+        }
+
+        private synchronized void exited(final Process exitedProcess) {
+            if (stopped || exitedProcess != process) {
+                return;
+            }
+            final long now = System.nanoTime();
+            exited = now;
+            down = true;
+            if (now - started > crashLoopUnit.toNanos(crashLoopWindow)) {
+                // The process was stable, start backing off again from the initial delay
+                backoffNanos = initialBackoffNanos;
+            }
+            scheduleRestart(now, exitedProcess.exitValue() == RESTART_EXIT_CODE, null);
+        }
+
+        private void restart() {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                pendingRestart = null;
+                restartCount++;
+                restartTimes.addLast(System.nanoTime());
+            }
+            final LaunchHandle handle;
+            try {
+                handle = launcher.launchAsync();
+            } catch (RuntimeException e) {
+                restartFailed(e);
+                return;
+            }
+            // The process is recorded once it has been started, preparing the launch may take minutes
+            handle.started().whenCompleteAsync((process, error) -> {
+                if (error == null) {
+                    restarted(process);
+                } else if (error instanceof CompletionException && error.getCause() != null) {
+                    restartFailed(error.getCause());
+                } else {
+                    restartFailed(error);
+                }
+            }, SchedulerHolder.SCHEDULER);
+        }
+
+        private void restarted(final Process process) {
+            synchronized (this) {
+                if (!stopped) {
+                    start(process);
+                    return;
+                }
+            }
+            // Supervision was stopped while the process was being launched
+            process.destroyForcibly();
+        }
+
+        private synchronized void restartFailed(final Throwable cause) {
+            if (!stopped) {
+                // Treat a failed launch like a process which exited immediately
+                scheduleRestart(System.nanoTime(), false, cause);
+            }
+        }
+
+        private void scheduleRestart(final long now, final boolean immediate, final Throwable cause) {
+            final long window = crashLoopUnit.toNanos(crashLoopWindow);
+            while (!restartTimes.isEmpty() && now - restartTimes.peekFirst() > window) {
+                restartTimes.pollFirst();
+            }
+            if (restartTimes.size() >= maxRestarts) {
+                stopped = true;
+                final IllegalStateException e = LauncherMessages.MESSAGES.crashLoop(restartTimes.size(),
+                        crashLoopWindow, crashLoopUnit);
+                if (cause != null) {
+                    e.addSuppressed(cause);
+                }
+                terminated.completeExceptionally(e);
+                return;
+            }
+            final long delay;
+            if (immediate) {
+                delay = 0L;
+            } else {
+                delay = backoffNanos;
+                backoffNanos = Math.min(maxBackoffNanos, Math.max(1L, backoffNanos * 2L));
+            }
+            pendingRestart = SchedulerHolder.SCHEDULER.schedule(this::restart, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of {@linkplain ProcessHelper#terminate(ProcessHandle, long, java.util.concurrent.TimeUnit) terminating} a
+ * process and its descendants.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class ProcessTermination {
+
+    /**
+     * What happened to a process.
+     */
+    public enum Outcome {
+        /**
+         * The process had already exited before it was asked to terminate.
+         */
+        EXITED,
+        /**
+         * The process exited after it was asked to terminate normally.
+         */
+        TERMINATED,
+        /**
+         * The process did not exit before the deadline and was forcibly killed.
+         */
+        KILLED,
+        /**
+         * The process was still alive after it was forcibly killed.
+         */
+        ALIVE,
+    }
+
+    private final Map<Long, Outcome> outcomes;
+
+    ProcessTermination(final Map<Long, Outcome> outcomes) {
+        this.outcomes = Collections.unmodifiableMap(outcomes);
+    }
+
+    /**
+     * Returns what happened to each process keyed by the process id. The process which was terminated is the first
+     * entry, followed by its descendants.
+     *
+     * @return the outcome for each process id
+     */
+    public Map<Long, Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * Returns what happened to the process.
+     *
+     * @param pid the process id
+     *
+     * @return the outcome or {@code null} if the process was not part of the terminated processes
+     */
+    public Outcome getOutcome(final long pid) {
+        return outcomes.get(pid);
+    }
+
+    /**
+     * Indicates whether all the processes have exited.
+     *
+     * @return {@code true} if no process is alive
+     */
+    public boolean isTerminated() {
+        return !outcomes.containsValue(Outcome.ALIVE);
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessTermination" + outcomes;
+    }
+}
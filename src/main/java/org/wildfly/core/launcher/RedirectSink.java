@@ -0,0 +1,139 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ProcessBuilder.Redirect;
+
+/**
+ * Writes the output of a process consumed by the {@link OutputPump} to a {@link Redirect} destination and optionally
+ * to an {@link OutputCapture}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class RedirectSink implements OutputPump.Sink {
+
+    /**
+     * Opens a sink once the process is launched.
+     */
+    interface Opener {
+
+        /**
+         * Opens the sink.
+         *
+         * @return the sink
+         *
+         * @throws IOException if the destination could not be opened
+         */
+        RedirectSink open() throws IOException;
+    }
+
+    private final OutputCapture capture;
+    private OutputStream out;
+
+    private RedirectSink(final OutputStream out, final OutputCapture capture) {
+        this.out = out;
+        this.capture = capture;
+    }
+
+    /**
+     * Opens the destination for the output stream of a process.
+     *
+     * @param destination the destination to write the output to or {@code null} to discard the output
+     * @param capture     the capture to also write the output to or {@code null}
+     *
+     * @return the sink
+     *
+     * @throws IOException if the destination could not be opened
+     */
+    static RedirectSink output(final Redirect destination, final OutputCapture capture) throws IOException {
+        return new RedirectSink(open(destination, System.out), capture);
+    }
+
+    /**
+     * Opens the rolling file for the output stream of a process.
+     *
+     * @param destination the rolling file to write the output to
+     * @param capture     the capture to also write the output to or {@code null}
+     *
+     * @return the sink
+     *
+     * @throws IOException if the file could not be opened
+     */
+    static RedirectSink output(final RollingFileOutput destination, final OutputCapture capture) throws IOException {
+        return new RedirectSink(destination.open(), capture);
+    }
+
+    /**
+     * Opens the destination for the error stream of a process.
+     *
+     * @param destination the destination to write the error stream to or {@code null} to discard the error stream
+     * @param capture     the capture to also write the error stream to or {@code null}
+     *
+     * @return the sink
+     *
+     * @throws IOException if the destination could not be opened
+     */
+    static RedirectSink error(final Redirect destination, final OutputCapture capture) throws IOException {
+        return new RedirectSink(open(destination, System.err), capture);
+    }
+
+    /**
+     * Closes the sink, ignoring {@code null} sinks.
+     *
+     * @param sink the sink to close
+     */
+    static void close(final RedirectSink sink) {
+        if (sink != null) {
+            sink.close();
+        }
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+        if (out != null) {
+            try {
+                out.write(bytes, offset, length);
+                out.flush();
+            } catch (IOException ignore) {
+                // The destination can no longer be written to, the output is still consumed
+                close();
+            }
+        }
+        if (capture != null) {
+            capture.write(bytes, offset, length);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (out != null && out != System.out && out != System.err) {
+            try {
+                out.close();
+            } catch (IOException ignore) {
+            }
+        }
+        out = null;
+    }
+
+    private static OutputStream open(final Redirect destination, final OutputStream inherited) throws IOException {
+        if (destination == null) {
+            return null;
+        }
+        switch (destination.type()) {
+            case INHERIT:
+                return inherited;
+            case WRITE:
+                return new FileOutputStream(destination.file(), false);
+            case APPEND:
+                return new FileOutputStream(destination.file(), true);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * An output destination which rolls the file the output of a process is written to once it reaches a maximum size.
+ * <p>
+ * The output is appended to the file. Once writing the output would make the file larger than the
+ * {@linkplain #setMaxSize(long) maximum size}, the file is rolled to {@code <file>.1}, the previous {@code <file>.1}
+ * is rolled to {@code <file>.2} and so on. At most the {@linkplain #setMaxBackups(int) maximum number of backups} are
+ * kept. If {@linkplain #setCompress(boolean) compression} is enabled the rolled files are compressed with gzip and
+ * named {@code <file>.1.gz}. Rolled files are moved and compressed by a single background thread shared by all the
+ * rolling outputs, writing the output is not blocked by the compression. A rolled file which could not be moved or
+ * compressed is retried when the file is rolled again.
+ * </p>
+ *
+ * <pre>
+ *     final RollingFileOutput output = RollingFileOutput.of(logDir.resolve("console.log"))
+ *             .setMaxSize(10L * 1024L * 1024L)
+ *             .setMaxBackups(5)
+ *             .setCompress(true);
+ *     Launcher.of(builder)
+ *             .redirectOutput(output)
+ *             .launch();
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class RollingFileOutput {
+
+    private static final long DEFAULT_MAX_SIZE = 10L * 1024L * 1024L;
+    private static final int DEFAULT_MAX_BACKUPS = 5;
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String ROLLING_SUFFIX = ".rolling-";
+
+    private static class RollerHolder {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "wildfly-launcher-output-roller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final AtomicLong ROLLED_COUNT = new AtomicLong();
+    // The rolled files waiting to be shifted into the backups
+    private static final Set<Path> PENDING = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+    private long maxSize;
+    private int maxBackups;
+    private boolean compress;
+
+    private RollingFileOutput(final Path file) {
+        this.file = file;
+        maxSize = DEFAULT_MAX_SIZE;
+        maxBackups = DEFAULT_MAX_BACKUPS;
+    }
+
+    /**
+     * Creates a new rolling output for the file. By default the file is rolled once it reaches 10 MiB and 5 backups
+     * are kept uncompressed.
+     *
+     * @param file the file to write the output to
+     *
+     * @return the rolling output
+     */
+    public static RollingFileOutput of(final Path file) {
+        if (file == null) {
+            throw LauncherMessages.MESSAGES.nullParam("file");
+        }
+        return new RollingFileOutput(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the file the output is written to.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the maximum size, in bytes, of the file before it is rolled.
+     *
+     * @param maxSize the maximum size of the file
+     *
+     * @return this rolling output
+     */
+    public RollingFileOutput setMaxSize(final long maxSize) {
+        if (maxSize < 1L) {
+            throw LauncherMessages.MESSAGES.notPositive("maxSize", maxSize);
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of rolled files kept. If set to {@code 0} the output is discarded when the file is
+     * rolled.
+     *
+     * @param maxBackups the maximum number of rolled files
+     *
+     * @return this rolling output
+     */
+    public RollingFileOutput setMaxBackups(final int maxBackups) {
+        if (maxBackups < 0) {
+            throw LauncherMessages.MESSAGES.negative("maxBackups", maxBackups);
+        }
+        this.maxBackups = maxBackups;
+        return this;
+    }
+
+    /**
+     * Set to {@code true} to compress the rolled files with gzip.
+     *
+     * @param compress {@code true} to compress the rolled files
+     *
+     * @return this rolling output
+     */
+    public RollingFileOutput setCompress(final boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * Opens the file for a process. The current settings are used for the lifetime of the returned stream.
+     *
+     * @return the stream writing to the file
+     *
+     * @throws IOException if the file could not be opened
+     */
+    OutputStream open() throws IOException {
+        return new RollingStream(file, maxSize, maxBackups, compress);
+    }
+
+    private static class RollingStream extends OutputStream {
+        private final Path file;
+        private final long maxSize;
+        private final int maxBackups;
+        private final boolean compress;
+        private FileChannel channel;
+        private long size;
+
+        private RollingStream(final Path file, final long maxSize, final int maxBackups, final boolean compress) throws IOException {
+            this.file = file;
+            this.maxSize = maxSize;
+            this.maxBackups = maxBackups;
+            this.compress = compress;
+            openChannel();
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+            if (channel == null) {
+                throw LauncherMessages.MESSAGES.outputClosed(file);
+            }
+            if (size > 0L && size + len > maxSize) {
+                roll();
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        private void openChannel() throws IOException {
+            final Path parent = file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            size = channel.size();
+        }
+
+        private void roll() throws IOException {
+            channel.close();
+            channel = null;
+            // Move the file out of the way so writing can continue, the backups are shifted in the background
+            final Path rolled = file.resolveSibling(file.getFileName() + ROLLING_SUFFIX + ROLLED_COUNT.incrementAndGet());
+            try {
+                Files.move(file, rolled, StandardCopyOption.REPLACE_EXISTING);
+                PENDING.add(rolled);
+                RollerHolder.EXECUTOR.execute(() -> shiftBackups(rolled));
+            } finally {
+                openChannel();
+            }
+        }
+
+        private void shiftBackups(final Path rolled) {
+            try {
+                // Files left by a previous roll which failed are older than the file just rolled
+                final List<Path> files = leftovers();
+                files.add(rolled);
+                for (int i = 0; i < files.size(); i++) {
+                    final Path source = files.get(i);
+                    if (i < files.size() - maxBackups) {
+                        // Only the newest files fit in the backups
+                        Files.deleteIfExists(source);
+                    } else {
+                        shiftBackup(source);
+                    }
+                }
+            } catch (IOException ignore) {
+                // The remaining rolled files are left in place and retried when the file is rolled again
+            } finally {
+                PENDING.remove(rolled);
+            }
+        }
+
+        private List<Path> leftovers() throws IOException {
+            final List<Path> leftovers = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(file.getParent(),
+                    file.getFileName() + ROLLING_SUFFIX + "*")) {
+                for (Path leftover : files) {
+                    if (!PENDING.contains(leftover)) {
+                        leftovers.add(leftover);
+                    }
+                }
+            }
+            leftovers.sort(Comparator.comparingLong(RollingStream::lastModified));
+            return leftovers;
+        }
+
+        private void shiftBackup(final Path rolled) throws IOException {
+            final String suffix = compress ? COMPRESSED_SUFFIX : "";
+            Files.deleteIfExists(backup(maxBackups, suffix));
+            for (int i = maxBackups - 1; i > 0; i--) {
+                final Path source = backup(i, suffix);
+                if (Files.exists(source)) {
+                    Files.move(source, backup(i + 1, suffix), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (compress) {
+                final Path target = backup(1, suffix);
+                final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+                try {
+                    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                        Files.copy(rolled, out);
+                    }
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                Files.delete(rolled);
+            } else {
+                Files.move(rolled, backup(1, suffix), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private static long lastModified(final Path file) {
+            try {
+                return Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private Path backup(final int index, final String suffix) {
+            return file.resolveSibling(file.getFileName() + "." + index + suffix);
+        }
+    }
+}
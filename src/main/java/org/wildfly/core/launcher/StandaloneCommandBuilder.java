@@ -41,6 +41,8 @@ public class StandaloneCommandBuilder extends AbstractCommandBuilder<StandaloneC
     private String modulesLocklessArg;
     private String modulesMetricsArg;
     private final Map<String, String> securityProperties;
+    private AotCache aotCache;
+    private GcProfile gcProfile;
     private boolean addModuleAgent;
     private final Collection<String> moduleOpts;
 
@@ -184,6 +186,51 @@ public class StandaloneCommandBuilder extends AbstractCommandBuilder<StandaloneC
         return addJavaOptions(javaOpts);
     }
 
+    /**
+     * Sets the garbage collector and runtime tuning profile. The options of the profile are checked against the
+     * version and vendor of the JVM when the command is built. If the JVM options already select a garbage collector
+     * the profile is not applied.
+     *
+     * @param profile the profile or {@code null} to not use a profile
+     *
+     * @return the builder
+     */
+    public StandaloneCommandBuilder setGcProfile(final GcProfile profile) {
+        gcProfile = profile;
+        return this;
+    }
+
+    /**
+     * Returns the garbage collector and runtime tuning profile.
+     *
+     * @return the profile or {@code null} if no profile is used
+     */
+    public GcProfile getGcProfile() {
+        return gcProfile;
+    }
+
+    /**
+     * Replaces the default {@code -Xms64m -Xmx512m} JVM arguments with the heap, metaspace and processor count
+     * options computed from the container limits. Options which are already set, for example an explicit
+     * {@code -Xmx}, are kept. Options added afterwards are added after the computed options and take precedence.
+     * <p>
+     * If no container memory limit is set the options are computed from the physical memory of the host, which is
+     * shared with the other processes of the host, and the maximum heap is capped at 2 GiB. When several servers are
+     * launched on a host without container limits, set an explicit {@code -Xmx} for each server.
+     * </p>
+     *
+     * @param ergonomics the ergonomics used to compute the options
+     *
+     * @return the builder
+     */
+    public StandaloneCommandBuilder applyErgonomics(final Ergonomics ergonomics) {
+        if (ergonomics == null) {
+            throw MESSAGES.nullParam("ergonomics");
+        }
+        ergonomics.apply(javaOpts);
+        return this;
+    }
+
     /**
      * Returns the JVM arguments.
      *
@@ -563,19 +610,74 @@ public class StandaloneCommandBuilder extends AbstractCommandBuilder<StandaloneC
         return this;
     }
 
+    /**
+     * Sets the directory used to store the ahead-of-time cache. If set and the JVM is Java 24 or later, the first
+     * launch runs a training launch which records the classes loaded until the server has booted, shuts the server down
+     * and creates the cache. The launched server and following launches then use the cache to start faster.
+     * <p>
+     * The cache is only reused with the same JDK build, WildFly home directory, module path and JVM options. If any of
+     * these change, the training is run again on the next launch. Launches while the cache is being trained by another
+     * launch, and launches after the training failed, run without a cache. For earlier Java versions the directory is
+     * ignored. When the cache is used the {@linkplain #setClassDataSharingDirectory(Path) class data sharing directory}
+     * is ignored as the cache includes the class data.
+     * </p>
+     *
+     * @param dir the directory for the cache or {@code null} to not use an ahead-of-time cache
+     *
+     * @return the builder
+     */
+    public StandaloneCommandBuilder setAotCacheDirectory(final Path dir) {
+        aotCache = dir == null ? null : new AotCache(dir, "standalone");
+        return this;
+    }
+
+    /**
+     * Returns the directory used to store the ahead-of-time cache.
+     *
+     * @return the directory or {@code null} if an ahead-of-time cache is not used
+     */
+    public Path getAotCacheDirectory() {
+        return aotCache == null ? null : aotCache.getDirectory();
+    }
+
+    AotCache getAotCache() {
+        return aotCache;
+    }
+
     @Override
     public List<String> buildArguments() {
+        return buildArguments(new AotCache.Step(AotCache.Mode.USE));
+    }
+
+    /**
+     * Builds the command for a step of creating or using the {@linkplain #setAotCacheDirectory(Path) ahead-of-time
+     * cache}.
+     *
+     * @param step the step the command is built for
+     *
+     * @return the command
+     */
+    List<String> build(final AotCache.Step step) {
+        final List<String> cmd = new ArrayList<>();
+        cmd.add(environment.getJvm().getCommand());
+        cmd.addAll(buildArguments(step));
+        return cmd;
+    }
+
+    private List<String> buildArguments(final AotCache.Step step) {
         final List<String> cmd = new ArrayList<>();
         cmd.add("-D[Standalone]");
+        final int jvmOptionsIndex = cmd.size();
         // Check to see if an agent was added as a module option, if so we want to add JBoss Modules as an agent.
         if (addModuleAgent) {
             cmd.add("-javaagent:" + getModulesJarName());
         }
         cmd.addAll(getJavaOptions());
+        GcProfile.addOptions(gcProfile, environment.getJvm(), getJavaOptions(), cmd);
         if (environment.getJvm().isModular()) {
             cmd.addAll(DEFAULT_MODULAR_VM_ARGUMENTS);
             for (final String optionalModularArgument : OPTIONAL_DEFAULT_MODULAR_VM_ARGUMENTS) {
-                if (Jvm.isPackageAvailable(environment.getJvm().getPath(), optionalModularArgument)) {
+                if (environment.getJvm().isPackageAvailable(optionalModularArgument)) {
                     cmd.add(optionalModularArgument);
                 }
             }
@@ -599,6 +701,11 @@ public class StandaloneCommandBuilder extends AbstractCommandBuilder<StandaloneC
         }
         cmd.add(getBootLogArgument("server.log"));
         cmd.add(getLoggingPropertiesArgument("logging.properties"));
+        if (aotCache == null || !aotCache.addOptions(step, environment.getJvm(), cmd, jvmOptionsIndex,
+                getCacheLayout(), getCacheSources())) {
+            addClassDataSharing(cmd, jvmOptionsIndex, environment.getJvm(), "standalone");
+        }
+        addArgumentFile(cmd, jvmOptionsIndex, environment.getJvm());
         cmd.add("-jar");
         cmd.add(getModulesJarName());
         if (useSecurityManager()) {
@@ -0,0 +1,564 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Authenticator;
+import java.net.HttpURLConnection;
+import java.net.PasswordAuthentication;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.wildfly.core.launcher.logger.LauncherMessages;
+
+/**
+ * A pool of standalone servers booted in {@linkplain AbstractCommandBuilder#setStartSuspended() suspended mode} ready
+ * to be handed out.
+ * <p>
+ * The pool keeps up to the {@linkplain #setCapacity(int) capacity} servers booted. Each server is launched with a
+ * port offset from the {@linkplain #setPortAllocator(PortAllocator) port allocator}. When a server is
+ * {@linkplain #acquire(long, TimeUnit) acquired} it is resumed with the {@link Resumer} and a new server is launched
+ * in the background to replace it.
+ * </p>
+ * <p>
+ * The servers run at the same time, so each builder supplied to the pool must use its own
+ * {@linkplain StandaloneCommandBuilder#setBaseDirectory(Path) base directory}, for example a copy of a template base
+ * directory. A server whose base directory is used by another server of the pool fails to launch.
+ * </p>
+ * <p>
+ * If no server was acquired within the {@linkplain #setIdleTimeout(long, TimeUnit) idle timeout} the idle servers are
+ * destroyed and no new servers are launched until the next server is acquired. Servers older than the
+ * {@linkplain #setMaxAge(long, TimeUnit) maximum age} are destroyed and replaced.
+ * </p>
+ *
+ * <pre>
+ *     try (StandbyPool pool = StandbyPool.of(() -&gt; StandaloneCommandBuilder.of(jbossHome)
+ *                     .setBaseDirectory(copyOf(jbossHome.resolve("standalone"))),
+ *             StandbyPool.Resumer.http("admin", password))
+ *             .setCapacity(2)
+ *             .start()) {
+ *         try (StandbyServer server = pool.acquire(60, TimeUnit.SECONDS)) {
+ *             runTests(server.getPortOffset());
+ *         }
+ *     }
+ * </pre>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class StandbyPool implements AutoCloseable {
+
+    private static final long MAINTENANCE_MILLIS = 1000L;
+    private static final long MAX_FAILURE_DELAY_MILLIS = 30_000L;
+    private static final int DEFAULT_MANAGEMENT_PORT = 9990;
+
+    private static class SchedulerHolder {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "wildfly-launcher-standby");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static class WorkerHolder {
+        static final Executor EXECUTOR;
+
+        static {
+            // Launching and terminating servers may block, keep it off the scheduler shared by all the pools
+            final int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            final AtomicInteger count = new AtomicInteger();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                final Thread thread = new Thread(r, "wildfly-launcher-standby-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            EXECUTOR = executor;
+        }
+    }
+
+    /**
+     * Resumes a suspended server.
+     */
+    @FunctionalInterface
+    public interface Resumer {
+
+        /**
+         * Resumes the server.
+         *
+         * @param server the server to resume
+         *
+         * @throws IOException if the server could not be resumed
+         */
+        void resume(StandbyServer server) throws IOException;
+
+        /**
+         * Creates a resumer which executes the {@code resume} operation with the HTTP management API on
+         * {@code 127.0.0.1} and the {@linkplain StandbyServer#getManagementPort() management port} of the server.
+         *
+         * @param username the management user
+         * @param password the password of the management user
+         *
+         * @return the resumer
+         */
+        static Resumer http(final String username, final char[] password) {
+            if (username == null) {
+                throw LauncherMessages.MESSAGES.nullParam("username");
+            }
+            if (password == null) {
+                throw LauncherMessages.MESSAGES.nullParam("password");
+            }
+            final char[] copy = password.clone();
+            return server -> resumeHttp(server, username, copy);
+        }
+    }
+
+    private final Supplier<? extends StandaloneCommandBuilder> builders;
+    private final Resumer resumer;
+    private final Deque<StandbyServer> ready;
+    private final Set<Path> baseDirs;
+    private int capacity;
+    private int managementPort;
+    private long idleTimeoutNanos;
+    private long maxAgeNanos;
+    private PortAllocator portAllocator;
+    private Function<StandaloneCommandBuilder, Launcher> launcherFactory;
+    private int booting;
+    private int failures;
+    private Throwable lastFailure;
+    private long lastAcquired;
+    private boolean started;
+    private boolean closed;
+    private ScheduledFuture<?> maintenance;
+
+    private StandbyPool(final Supplier<? extends StandaloneCommandBuilder> builders, final Resumer resumer) {
+        this.builders = builders;
+        this.resumer = resumer;
+        ready = new ArrayDeque<>();
+        baseDirs = new HashSet<>();
+        capacity = 1;
+        managementPort = DEFAULT_MANAGEMENT_PORT;
+        portAllocator = PortAllocator.getDefault();
+        launcherFactory = Launcher::of;
+    }
+
+    /**
+     * Creates a new pool. The pool does not launch any servers until it is {@linkplain #start() started}.
+     *
+     * @param builders the supplier of a new builder for each server launched, each builder must use its own base
+     *                 directory
+     * @param resumer  the resumer used to resume a server when it is acquired
+     *
+     * @return the new pool
+     */
+    public static StandbyPool of(final Supplier<? extends StandaloneCommandBuilder> builders, final Resumer resumer) {
+        if (builders == null) {
+            throw LauncherMessages.MESSAGES.nullParam("builders");
+        }
+        if (resumer == null) {
+            throw LauncherMessages.MESSAGES.nullParam("resumer");
+        }
+        return new StandbyPool(builders, resumer);
+    }
+
+    /**
+     * Sets the number of servers kept booted. The default is {@code 1}.
+     *
+     * @param capacity the number of servers kept booted
+     *
+     * @return this pool
+     */
+    public synchronized StandbyPool setCapacity(final int capacity) {
+        if (capacity < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("capacity", capacity);
+        }
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Sets the time after which, if no server has been acquired, the idle servers are destroyed. A value of {@code 0}
+     * keeps the servers booted until the pool is closed, which is the default.
+     *
+     * @param timeout the idle timeout
+     * @param unit    the unit of the timeout
+     *
+     * @return this pool
+     */
+    public synchronized StandbyPool setIdleTimeout(final long timeout, final TimeUnit unit) {
+        if (timeout < 0L) {
+            throw LauncherMessages.MESSAGES.negative("timeout", timeout);
+        }
+        idleTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the maximum age of a server which has not been acquired. Older servers are destroyed and replaced. A value
+     * of {@code 0} does not limit the age of a server, which is the default.
+     *
+     * @param maxAge the maximum age
+     * @param unit   the unit of the maximum age
+     *
+     * @return this pool
+     */
+    public synchronized StandbyPool setMaxAge(final long maxAge, final TimeUnit unit) {
+        if (maxAge < 0L) {
+            throw LauncherMessages.MESSAGES.negative("maxAge", maxAge);
+        }
+        maxAgeNanos = unit.toNanos(maxAge);
+        return this;
+    }
+
+    /**
+     * Sets the HTTP management port of the servers without the port offset. The default is {@code 9990}.
+     *
+     * @param managementPort the HTTP management port configured for the servers
+     *
+     * @return this pool
+     *
+     * @see StandbyServer#getManagementPort()
+     */
+    public synchronized StandbyPool setManagementPort(final int managementPort) {
+        if (managementPort < 1) {
+            throw LauncherMessages.MESSAGES.notPositive("managementPort", managementPort);
+        }
+        this.managementPort = managementPort;
+        return this;
+    }
+
+    /**
+     * Sets the allocator used to allocate the port offset of each server. The default is the
+     * {@linkplain PortAllocator#getDefault() default allocator}.
+     *
+     * @param portAllocator the port allocator
+     *
+     * @return this pool
+     */
+    public synchronized StandbyPool setPortAllocator(final PortAllocator portAllocator) {
+        if (portAllocator == null) {
+            throw LauncherMessages.MESSAGES.nullParam("portAllocator");
+        }
+        this.portAllocator = portAllocator;
+        return this;
+    }
+
+    /**
+     * Sets the function creating the launcher for a server, for example to redirect the output of the servers. The
+     * launcher is {@linkplain Launcher#launchAsync() launched asynchronously}. The default is {@link Launcher#of}.
+     *
+     * @param launcherFactory the function creating the launcher for the builder of a server
+     *
+     * @return this pool
+     */
+    public synchronized StandbyPool setLauncherFactory(final Function<StandaloneCommandBuilder, Launcher> launcherFactory) {
+        if (launcherFactory == null) {
+            throw LauncherMessages.MESSAGES.nullParam("launcherFactory");
+        }
+        this.launcherFactory = launcherFactory;
+        return this;
+    }
+
+    /**
+     * Starts launching the servers in the background.
+     *
+     * @return this pool
+     */
+    public synchronized StandbyPool start() {
+        if (closed) {
+            throw LauncherMessages.MESSAGES.standbyPoolClosed();
+        }
+        if (!started) {
+            started = true;
+            lastAcquired = System.nanoTime();
+            maintenance = SchedulerHolder.SCHEDULER.scheduleWithFixedDelay(this::maintain, MAINTENANCE_MILLIS,
+                    MAINTENANCE_MILLIS, TimeUnit.MILLISECONDS);
+            replenish();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of servers booted and waiting to be acquired.
+     *
+     * @return the number of servers ready
+     */
+    public synchronized int getReadyCount() {
+        return ready.size();
+    }
+
+    /**
+     * Acquires a booted server, waiting for a server to boot if none is ready. The server is resumed before it is
+     * returned and a new server is launched to replace it. The caller is responsible for
+     * {@linkplain StandbyServer#close() closing} the server.
+     *
+     * @param timeout the maximum time to wait for a server
+     * @param unit    the unit of the timeout
+     *
+     * @return the resumed server
+     *
+     * @throws InterruptedException if interrupted while waiting for a server
+     * @throws TimeoutException     if no server was booted within the timeout
+     * @throws IOException          if the server could not be resumed
+     */
+    public StandbyServer acquire(final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException, IOException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final StandbyServer server;
+        synchronized (this) {
+            if (!started) {
+                start();
+            }
+            lastAcquired = System.nanoTime();
+            replenish();
+            StandbyServer next;
+            while ((next = pollReady()) == null) {
+                if (closed) {
+                    throw LauncherMessages.MESSAGES.standbyPoolClosed();
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    final TimeoutException e = LauncherMessages.MESSAGES.noStandbyServer(timeout, unit);
+                    if (lastFailure != null) {
+                        e.initCause(lastFailure);
+                    }
+                    throw e;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            server = next;
+            replenish();
+        }
+        try {
+            resumer.resume(server);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
+    /**
+     * Closes the pool terminating all the servers which have not been acquired.
+     */
+    @Override
+    public void close() {
+        final List<StandbyServer> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (maintenance != null) {
+                maintenance.cancel(false);
+            }
+            toClose = new ArrayList<>(ready);
+            ready.clear();
+            notifyAll();
+        }
+        CompletableFuture.allOf(toClose.stream()
+                .map(server -> CompletableFuture.runAsync(server::close, WorkerHolder.EXECUTOR))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Returns the next server which is still usable, destroying servers which have exited or are too old.
+     */
+    private StandbyServer pollReady() {
+        StandbyServer server;
+        while ((server = ready.poll()) != null) {
+            if (server.getProcess().isAlive() && !isExpired(server, System.nanoTime())) {
+                return server;
+            }
+            closeAsync(server);
+        }
+        return null;
+    }
+
+    private boolean isExpired(final StandbyServer server, final long now) {
+        return maxAgeNanos > 0L && server.getAgeNanos(now) > maxAgeNanos;
+    }
+
+    private boolean isIdle(final long now) {
+        return idleTimeoutNanos > 0L && now - lastAcquired > idleTimeoutNanos;
+    }
+
+    private void replenish() {
+        if (closed || isIdle(System.nanoTime())) {
+            return;
+        }
+        final PortAllocator portAllocator = this.portAllocator;
+        final Function<StandaloneCommandBuilder, Launcher> launcherFactory = this.launcherFactory;
+        final int managementPort = this.managementPort;
+        while (ready.size() + booting < capacity) {
+            booting++;
+            // The builder is supplied, the ports allocated and the command built without holding the lock
+            WorkerHolder.EXECUTOR.execute(() -> launch(portAllocator, launcherFactory, managementPort));
+        }
+    }
+
+    private void launch(final PortAllocator portAllocator,
+                        final Function<StandaloneCommandBuilder, Launcher> launcherFactory, final int managementPort) {
+        PortAllocator.Allocation allocation = null;
+        Path baseDir = null;
+        try {
+            final StandaloneCommandBuilder builder = builders.get();
+            builder.setStartSuspended();
+            final Path builderBaseDir = builder.getBaseDirectory();
+            synchronized (this) {
+                if (!baseDirs.add(builderBaseDir)) {
+                    throw LauncherMessages.MESSAGES.baseDirectoryInUse(builderBaseDir);
+                }
+            }
+            baseDir = builderBaseDir;
+            allocation = portAllocator.allocate(builder, false);
+            final LaunchHandle handle = launcherFactory.apply(builder).launchAsync();
+            handle.onExit().whenComplete((process, error) -> releaseBaseDirectory(builderBaseDir));
+            final StandbyServer server = new StandbyServer(handle, allocation, managementPort);
+            handle.booted().whenCompleteAsync((process, error) -> bootComplete(server, process, error),
+                    SchedulerHolder.SCHEDULER);
+        } catch (RuntimeException e) {
+            if (allocation != null) {
+                allocation.close();
+            }
+            if (baseDir != null) {
+                releaseBaseDirectory(baseDir);
+            }
+            SchedulerHolder.SCHEDULER.execute(() -> bootComplete(null, null, e));
+        }
+    }
+
+    private synchronized void releaseBaseDirectory(final Path baseDir) {
+        baseDirs.remove(baseDir);
+    }
+
+    private void bootComplete(final StandbyServer server, final Process process, final Throwable error) {
+        synchronized (this) {
+            booting--;
+            if (error == null) {
+                failures = 0;
+                server.booted(process);
+                if (!closed) {
+                    ready.add(server);
+                    // Replace the server if the process exits while waiting to be acquired
+                    server.getHandle().onExit().whenCompleteAsync((p, e) -> exited(server), SchedulerHolder.SCHEDULER);
+                    notifyAll();
+                    return;
+                }
+            } else {
+                lastFailure = error;
+                failures++;
+                if (!closed) {
+                    // Back off before launching a new server so a configuration which always fails does not loop
+                    final long delay = Math.min(MAX_FAILURE_DELAY_MILLIS, MAINTENANCE_MILLIS << Math.min(failures - 1, 5));
+                    SchedulerHolder.SCHEDULER.schedule(() -> {
+                        synchronized (this) {
+                            replenish();
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (server != null) {
+            closeAsync(server);
+        }
+    }
+
+    private void exited(final StandbyServer server) {
+        final boolean removed;
+        synchronized (this) {
+            removed = ready.remove(server);
+            if (removed) {
+                replenish();
+            }
+        }
+        if (removed) {
+            closeAsync(server);
+        }
+    }
+
+    private void maintain() {
+        final List<StandbyServer> toClose = new ArrayList<>();
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final boolean idle = isIdle(now);
+            final Iterator<StandbyServer> iter = ready.iterator();
+            while (iter.hasNext()) {
+                final StandbyServer server = iter.next();
+                if (isExpired(server, now) || (idle && server.getIdleNanos(now) > idleTimeoutNanos)) {
+                    iter.remove();
+                    toClose.add(server);
+                }
+            }
+            replenish();
+        }
+        toClose.forEach(this::closeAsync);
+    }
+
+    private void closeAsync(final StandbyServer server) {
+        // Terminating the server waits for the process to exit
+        WorkerHolder.EXECUTOR.execute(server::close);
+    }
+
+    private static void resumeHttp(final StandbyServer server, final String username, final char[] password) throws IOException {
+        final URL url = new URL("http", "127.0.0.1", server.getManagementPort(), "/management");
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setAuthenticator(new Authenticator() {
+                @Override
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication(username, password);
+                }
+            });
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write("{\"operation\":\"resume\",\"address\":[]}".getBytes(StandardCharsets.UTF_8));
+            }
+            final int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw LauncherMessages.MESSAGES.resumeFailed(status, read(connection.getErrorStream()));
+            }
+            read(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream stream = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            stream.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright The WildFly Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.wildfly.core.launcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A server booted by a {@link StandbyPool}. Once {@linkplain StandbyPool#acquire(long, java.util.concurrent.TimeUnit)
+ * acquired} the server has been resumed and is ready to accept requests.
+ * <p>
+ * Closing the server terminates the process and releases the ports allocated for it.
+ * </p>
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class StandbyServer implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final LaunchHandle handle;
+    private final PortAllocator.Allocation allocation;
+    private final int managementPort;
+    private final long launched;
+    private volatile Process process;
+    private volatile long idleSince;
+
+    StandbyServer(final LaunchHandle handle, final PortAllocator.Allocation allocation, final int managementPort) {
+        this.handle = handle;
+        this.allocation = allocation;
+        this.managementPort = managementPort;
+        launched = System.nanoTime();
+    }
+
+    /**
+     * Returns the process of the server.
+     *
+     * @return the process
+     */
+    public Process getProcess() {
+        return process;
+    }
+
+    /**
+     * Returns the handle the server was launched with.
+     *
+     * @return the launch handle
+     */
+    public LaunchHandle getHandle() {
+        return handle;
+    }
+
+    /**
+     * Returns the {@code jboss.socket.binding.port-offset} of the server.
+     *
+     * @return the port offset
+     */
+    public int getPortOffset() {
+        return allocation.getPortOffset();
+    }
+
+    /**
+     * Returns the HTTP management port of the server, the {@linkplain StandbyPool#setManagementPort(int) management
+     * port} of the pool plus the port offset.
+     *
+     * @return the HTTP management port
+     */
+    public int getManagementPort() {
+        return managementPort + allocation.getPortOffset();
+    }
+
+    /**
+     * Terminates the process of the server and releases the allocated ports. The process is forcibly killed if it has
+     * not exited within 30 seconds.
+     */
+    @Override
+    public void close() {
+        try {
+            final Process process = this.process;
+            if (process != null) {
+                ProcessHelper.terminate(process, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } else {
+                handle.started().thenAccept(Process::destroyForcibly);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            allocation.close();
+        }
+    }
+
+    void booted(final Process process) {
+        this.process = process;
+        idleSince = System.nanoTime();
+    }
+
+    long getAgeNanos(final long now) {
+        return now - launched;
+    }
+
+    long getIdleNanos(final long now) {
+        return now - idleSince;
+    }
+}
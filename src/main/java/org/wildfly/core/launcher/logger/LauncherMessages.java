@@ -5,7 +5,11 @@
 
 package org.wildfly.core.launcher.logger;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.jboss.logging.annotations.Message;
 import org.jboss.logging.annotations.MessageBundle;
@@ -48,4 +52,55 @@ public interface LauncherMessages {
 
     @Message(id = 8, value = "The security manager is not supported for %s")
     IllegalArgumentException securityManagerNotSupported(Path javaHome);
+
+    @Message(id = 9, value = "The placeholder '%s' for the template hole %s was not found in the command.")
+    IllegalArgumentException placeholderNotFound(String placeholder, String name);
+
+    @Message(id = 10, value = "No value was defined for the template hole %s.")
+    IllegalArgumentException missingTemplateValue(String name);
+
+    @Message(id = 11, value = "The template does not define a hole named %s.")
+    IllegalArgumentException unknownTemplateHole(String name);
+
+    @Message(id = 12, value = "The process exited with code %d before the server booted.")
+    IllegalStateException processExitedBeforeBoot(int exitCode);
+
+    @Message(id = 13, value = "The server failed to boot, %s was logged.")
+    IllegalStateException serverBootFailed(String messageId);
+
+    @Message(id = 14, value = "The parameter %s must be greater than 0, found %d.")
+    IllegalArgumentException notPositive(String name, long value);
+
+    @Message(id = 15, value = "Could not find a port offset where all the ports %s are available.")
+    IllegalStateException noPortOffsetAvailable(Collection<Integer> ports);
+
+    @Message(id = 16, value = "Could not find an available port starting at %d.")
+    IllegalStateException noPortAvailable(int start);
+
+    @Message(id = 17, value = "The parameter %s must not be negative, found %d.")
+    IllegalArgumentException negative(String name, long value);
+
+    @Message(id = 18, value = "The output file %s has been closed.")
+    IOException outputClosed(Path file);
+
+    @Message(id = 19, value = "The standby pool has been closed.")
+    IllegalStateException standbyPoolClosed();
+
+    @Message(id = 20, value = "No standby server was available within %d %s.")
+    TimeoutException noStandbyServer(long timeout, TimeUnit unit);
+
+    @Message(id = 21, value = "Failed to resume the server, the management operation returned %d: %s")
+    IOException resumeFailed(int status, String response);
+
+    @Message(id = 22, value = "The process was restarted %d times within %d %s and will no longer be restarted.")
+    IllegalStateException crashLoop(int restarts, long window, TimeUnit unit);
+
+    @Message(id = 23, value = "The parameter %s must be between 1 and 100, found %d.")
+    IllegalArgumentException invalidPercentage(String name, int value);
+
+    @Message(id = 24, value = "The server did not boot within %d %s.")
+    TimeoutException bootTimeout(long timeout, TimeUnit unit);
+
+    @Message(id = 25, value = "The base directory %s is already used by another server of the standby pool.")
+    IllegalStateException baseDirectoryInUse(Path baseDir);
 }
@@ -7,14 +7,26 @@ package org.wildfly.core.launcher;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.wildfly.core.launcher.Arguments.Argument;
@@ -200,7 +212,7 @@ class CommandBuilderTest {
     }
 
     @Test
-    void domainBuilder() {
+    void domainBuilder() throws Exception {
         final int featureVersion = Runtime.version().feature();
         // Set up a standalone command builder
         final DomainCommandBuilder commandBuilder = DomainCommandBuilder.of(WILDFLY_HOME)
@@ -210,6 +222,8 @@ class CommandBuilderTest {
                 .setDomainConfiguration("domain.xml")
                 .setHostConfiguration("host.xml")
                 .setBindAddressHint("management", "0.0.0.0");
+        // The Java homes can be resolved before the command is built
+        assertSame(commandBuilder, commandBuilder.resolveJavaHomesAsync().get(30, TimeUnit.SECONDS));
 
         if (featureVersion < 24) {
             commandBuilder.addJavaOption("-Djava.security.manager");
@@ -301,6 +315,332 @@ class CommandBuilderTest {
         assertTrue(stringArgs.contains("-Dprop3=value3"), "Missing -Dprop3=value3");
     }
 
+    @Test
+    void commandTemplate() throws Exception {
+        final Path templateDir = Files.createTempDirectory("template-base-dir");
+        try {
+            final StandaloneCommandBuilder commandBuilder = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .setBaseDirectory(templateDir)
+                    .addJavaOption("-Djboss.socket.binding.port-offset=@offset@")
+                    .addJavaOption("-Djboss.node.name=@node@");
+            final CommandTemplate template = CommandTemplate.compile(commandBuilder, Map.of(
+                    "baseDir", templateDir.toString(),
+                    "offset", "@offset@",
+                    "node", "@node@"));
+            assertEquals(Set.of("baseDir", "offset", "node"), template.getHoles());
+
+            final String baseDir = Paths.get("instances", "node1").toAbsolutePath().toString();
+            final List<String> expected = new ArrayList<>();
+            for (String arg : commandBuilder.build()) {
+                expected.add(arg.replace(templateDir.toString(), baseDir)
+                        .replace("@offset@", "100")
+                        .replace("@node@", "node1"));
+            }
+            final CommandBuilder instance = template.instance(Map.of("baseDir", baseDir, "offset", "100", "node", "node1"));
+            assertEquals(expected, instance.build());
+            assertEquals(expected.subList(1, expected.size()), instance.buildArguments());
+            assertTrue(instance.build().contains("-Djboss.server.log.dir=" + Paths.get(baseDir, "log")),
+                    () -> "Expected the log directory to be derived from the base directory: " + instance.build());
+
+            assertThrows(IllegalArgumentException.class, () -> template.instance(Map.of("offset", "100", "node", "node1")));
+            assertThrows(IllegalArgumentException.class, () -> template.instance(Map.of("baseDir", baseDir,
+                    "offset", "100", "node", "node1", "unknown", "value")));
+            assertThrows(IllegalArgumentException.class, () -> CommandTemplate.compile(commandBuilder, Map.of("missing", "@missing@")));
+        } finally {
+            Files.delete(templateDir);
+        }
+    }
+
+    @Test
+    void argumentFile() throws Exception {
+        final Path dir = Files.createTempDirectory("argument-files");
+        try {
+            final StandaloneCommandBuilder commandBuilder = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .addJavaOption("-Dtest.key=test value");
+            final List<String> inline = commandBuilder.build();
+            commandBuilder.setArgumentFileDirectory(dir);
+            final List<String> command = commandBuilder.build();
+            final int jarIndex = command.indexOf("-jar");
+            assertEquals("-D[Standalone]", command.get(1));
+            assertEquals(3, jarIndex, () -> "Expected the JVM options to be replaced with an argument file: " + command);
+            assertTrue(command.get(2).startsWith("@"), () -> "Expected an argument file: " + command);
+            assertEquals(inline.subList(inline.indexOf("-jar"), inline.size()), command.subList(jarIndex, command.size()));
+
+            final Path argumentFile = Paths.get(command.get(2).substring(1));
+            final List<String> lines = Files.readAllLines(argumentFile);
+            assertEquals(inline.subList(2, inline.indexOf("-jar")).size(), lines.size());
+            assertTrue(lines.contains("\"-Dtest.key=test value\""), () -> "Expected the argument with a space to be quoted: " + lines);
+
+            // Identical options should reuse the same file
+            assertEquals(command, commandBuilder.build());
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1L, files.count());
+            }
+
+            // Files unused for a day are deleted when a new file is written, files in use are kept
+            final Path staleFile = dir.resolve("jvm-stale.args");
+            Files.writeString(staleFile, "-Dstale=true");
+            final FileTime dayAgo = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2L));
+            Files.setLastModifiedTime(staleFile, dayAgo);
+            Files.setLastModifiedTime(argumentFile, dayAgo);
+            assertEquals(command, commandBuilder.build());
+            final List<String> changed = commandBuilder.addJavaOption("-Dtest.changed=true").build();
+            assertTrue(Files.notExists(staleFile), "Expected the stale argument file to be deleted");
+            assertTrue(Files.exists(argumentFile), "Expected the used argument file to be kept");
+            assertTrue(Files.exists(Paths.get(changed.get(2).substring(1))));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void classDataSharing() throws Exception {
+        final Path dir = Files.createTempDirectory("class-data-sharing");
+        try {
+            final StandaloneCommandBuilder commandBuilder = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .setClassDataSharingDirectory(dir);
+            final int featureVersion = Jvm.current().getFeatureVersion();
+            final List<String> command = commandBuilder.build();
+            final String archive = findArchive(command);
+            if (featureVersion < 13) {
+                assertNull(archive, "Did not expect class data sharing options");
+                return;
+            }
+            assertTrue(archive != null && archive.endsWith(".jsa"), () -> "Expected a class data sharing archive: " + command);
+            assertTrue(command.indexOf("-jar") > command.indexOf(archive));
+            if (featureVersion >= 19) {
+                assertArgumentExists(command, "-XX:+AutoCreateSharedArchive", 1);
+            } else {
+                assertArgumentExists(command, "-XX:ArchiveClassesAtExit=" + archive, 1);
+                // While the first launch is recording the archive other launches do not use it
+                assertNull(findArchive(commandBuilder.build()));
+                Files.writeString(Path.of(archive), "archive");
+                assertArgumentExists(commandBuilder.build(), "-XX:SharedArchiveFile=" + archive, 1);
+            }
+
+            // Servers of the same installation with different paths, ports and system properties share the archive
+            final List<String> shared = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .setClassDataSharingDirectory(dir)
+                    .addJavaOption("-Dtest.key=value")
+                    .setBaseDirectory(Files.createDirectories(dir.resolve("base")))
+                    .setDebug(true, 8788)
+                    .build();
+            Files.delete(dir.resolve("base"));
+            assertEquals(archive, findArchive(shared));
+
+            // Changing the JVM options which change the classes loaded invalidates the archive
+            Files.writeString(Path.of(archive), "archive");
+            commandBuilder.addJavaOption("-XX:+UseSerialGC");
+            final List<String> changed = commandBuilder.build();
+            final String changedArchive = findArchive(changed);
+            assertTrue(changedArchive != null && !changedArchive.equals(archive), () -> "Expected a new archive: " + changed);
+            // The previous archive may still be used by a running server
+            assertTrue(Files.exists(Path.of(archive)), "Did not expect a recently used archive to be deleted");
+            Files.setLastModifiedTime(Path.of(archive), FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2L)));
+            commandBuilder.build();
+            assertFalse(Files.exists(Path.of(archive)), "Expected the stale archive to be deleted");
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void aotCache() throws Exception {
+        final Path dir = Files.createTempDirectory("aot-cache");
+        try {
+            final StandaloneCommandBuilder commandBuilder = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .setAotCacheDirectory(dir)
+                    .setClassDataSharingDirectory(dir);
+            assertEquals(dir.toAbsolutePath().normalize(), commandBuilder.getAotCacheDirectory());
+            final AotCache.Step step = new AotCache.Step(AotCache.Mode.USE);
+            final List<String> command = commandBuilder.build(step);
+            assertFalse(command.stream().anyMatch(arg -> arg.startsWith("-XX:AOT")),
+                    () -> "Did not expect an ahead-of-time cache without training: " + command);
+            final Path cache = step.getCache();
+            if (Jvm.current().getFeatureVersion() < 24) {
+                assertNull(cache, "Did not expect an ahead-of-time cache before Java 24");
+            } else {
+                // Once the cache exists it replaces the class data sharing archive
+                Files.writeString(cache, "cache");
+                final List<String> cached = commandBuilder.build();
+                assertArgumentExists(cached, "-XX:AOTCache=" + cache, 1);
+                assertNull(findArchive(cached), "Did not expect a class data sharing archive");
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void ergonomics() throws Exception {
+        final Path root = Files.createTempDirectory("cgroup");
+        try {
+            final Path group = Files.createDirectories(root.resolve("a").resolve("b"));
+            Files.writeString(root.resolve("cgroup.controllers"), "cpu memory");
+            Files.writeString(root.resolve("a").resolve("memory.max"), "4294967296");
+            Files.writeString(group.resolve("memory.max"), "max");
+            Files.writeString(group.resolve("cpu.max"), "150000 100000");
+            final Path procCgroup = Files.writeString(root.resolve("proc-cgroup"), "0::/a/b");
+
+            final Ergonomics ergonomics = Ergonomics.detect(root, procCgroup, root.resolve("meminfo"));
+            assertEquals(4294967296L, ergonomics.getMemoryLimit());
+            assertTrue(ergonomics.isMemoryLimited());
+            assertEquals(2, ergonomics.getProcessorLimit());
+            assertEquals(List.of("-Xms512m", "-Xmx2048m", "-XX:MaxMetaspaceSize=409m", "-XX:ActiveProcessorCount=2"),
+                    ergonomics.getOptions());
+            assertThrows(IllegalArgumentException.class, () -> ergonomics.setMaxHeapPercentage(0));
+
+            // The defaults are replaced, explicitly set options are kept
+            final List<String> javaOptions = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .addJavaOption("-Xmx1g")
+                    .applyErgonomics(ergonomics)
+                    .getJavaOptions();
+            assertFalse(javaOptions.contains("-Xms64m"), () -> "Expected the default to be replaced: " + javaOptions);
+            assertFalse(javaOptions.contains("-Xmx512m"), () -> "Expected the default to be replaced: " + javaOptions);
+            assertFalse(javaOptions.contains("-Xmx2048m"), () -> "Expected the explicit -Xmx to be kept: " + javaOptions);
+            assertTrue(javaOptions.containsAll(List.of("-Xmx1g", "-Xms512m", "-XX:ActiveProcessorCount=2")),
+                    () -> "Missing computed options: " + javaOptions);
+
+            // The computed heap options are clamped to the explicit heap options
+            final List<String> smallMaxHeap = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .addJavaOption("-Xmx256m")
+                    .applyErgonomics(ergonomics)
+                    .getJavaOptions();
+            assertTrue(smallMaxHeap.contains("-Xms256m"), () -> "Expected the initial heap to be clamped: " + smallMaxHeap);
+            final List<String> largeInitialHeap = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .addJavaOption("-Xms3g")
+                    .applyErgonomics(ergonomics)
+                    .getJavaOptions();
+            assertTrue(largeInitialHeap.contains("-Xmx3072m"), () -> "Expected the maximum heap to be clamped: " + largeInitialHeap);
+
+            // A heap sized from the memory is not overridden
+            final List<String> ramPercentage = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                    .addJavaOption("-XX:MaxRAMPercentage=75")
+                    .applyErgonomics(ergonomics)
+                    .getJavaOptions();
+            assertTrue(ramPercentage.stream().noneMatch(option -> option.startsWith("-Xms") || option.startsWith("-Xmx")),
+                    () -> "Did not expect heap options: " + ramPercentage);
+            assertTrue(ramPercentage.contains("-XX:MaxMetaspaceSize=409m"), () -> "Missing computed options: " + ramPercentage);
+
+            // The host controller uses a small share of the memory regardless of the server percentages
+            assertEquals(List.of("-Xms64m", "-Xmx409m", "-XX:MaxMetaspaceSize=256m", "-XX:ActiveProcessorCount=2"),
+                    ergonomics.setMaxHeapPercentage(80).getHostControllerOptions());
+            final List<String> hostController = DomainCommandBuilder.of(WILDFLY_HOME)
+                    .applyErgonomics(ergonomics)
+                    .getHostControllerJavaOptions();
+            assertTrue(hostController.containsAll(List.of("-Xms64m", "-Xmx409m")), () -> "Expected the host controller policy: " + hostController);
+
+            // Without a container limit the physical memory is shared by the host, the heap and metaspace are capped
+            Files.writeString(root.resolve("a").resolve("memory.max"), "max");
+            Files.writeString(root.resolve("meminfo"), "MemTotal:       67108864 kB\nMemFree:        1024 kB\n");
+            final Ergonomics host = Ergonomics.detect(root, procCgroup, root.resolve("meminfo"));
+            assertFalse(host.isMemoryLimited());
+            assertEquals(68719476736L, host.getMemoryLimit());
+            assertEquals(List.of("-Xms512m", "-Xmx2048m", "-XX:MaxMetaspaceSize=512m", "-XX:ActiveProcessorCount=2"),
+                    host.getOptions());
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void gcProfile() {
+        final Jvm jvm = Jvm.current();
+        final List<String> lowLatency = GcProfile.LOW_LATENCY.getOptions(jvm);
+        if (jvm.getFeatureVersion() >= 21) {
+            assertTrue(lowLatency.contains("-XX:+UseZGC"), () -> "Expected ZGC: " + lowLatency);
+        }
+        assertEquals(jvm.getFeatureVersion() >= 21 && jvm.getFeatureVersion() < 23, lowLatency.contains("-XX:+ZGenerational"));
+        assertEquals(jvm.getFeatureVersion() >= 24, GcProfile.SMALL_FOOTPRINT.getOptions(jvm).contains("-XX:+UseCompactObjectHeaders"));
+
+        final StandaloneCommandBuilder commandBuilder = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                .setGcProfile(GcProfile.THROUGHPUT);
+        final List<String> command = commandBuilder.build();
+        assertArgumentExists(command, "-XX:+UseParallelGC", 1);
+        assertTrue(command.indexOf("-XX:+UseParallelGC") < command.indexOf("-jar"));
+
+        // A collector selected explicitly is not replaced
+        commandBuilder.addJavaOption("-XX:+UseG1GC");
+        final List<String> explicit = commandBuilder.build();
+        assertFalse(explicit.contains("-XX:+UseParallelGC"), () -> "Did not expect the profile to be applied: " + explicit);
+
+        final List<String> domain = DomainCommandBuilder.of(WILDFLY_HOME)
+                .setGcProfile(GcProfile.BALANCED)
+                .build();
+        assertArgumentExists(domain, "-XX:MaxGCPauseMillis=200", 1);
+
+        // Options set explicitly are not overridden by the profile
+        final List<String> pauseTarget = StandaloneCommandBuilder.of(WILDFLY_HOME)
+                .setGcProfile(GcProfile.BALANCED)
+                .addJavaOption("-XX:MaxGCPauseMillis=100")
+                .build();
+        assertArgumentExists(pauseTarget, "-XX:+UseG1GC", 1);
+        assertArgumentExists(pauseTarget, "-XX:MaxGCPauseMillis=100", 1);
+        assertFalse(pauseTarget.contains("-XX:MaxGCPauseMillis=200"), () -> "Did not expect the profile pause target: " + pauseTarget);
+
+        // Options the JVM rejects are detected so the profile can fall back to G1
+        assertTrue(jvm.isAccepted(GcProfile.SMALL_FOOTPRINT.getOptions(jvm)));
+        assertFalse(jvm.isAccepted(List.of("-XX:+UseUnknownGC")), "Expected an unknown collector to be rejected");
+    }
+
+    @Test
+    void portAllocator() throws Exception {
+        // Bind the first port of the group so the allocator needs to skip the first offset
+        try (ServerSocketChannel bound = ServerSocketChannel.open().bind(new InetSocketAddress(0))) {
+            final int port = ((InetSocketAddress) bound.getLocalAddress()).getPort();
+            final PortAllocator allocator = PortAllocator.of(List.of(port, port + 1), 10, port + 2);
+            final StandaloneCommandBuilder commandBuilder = StandaloneCommandBuilder.of(WILDFLY_HOME);
+            try (
+                    PortAllocator.Allocation first = allocator.allocate(commandBuilder, true);
+                    PortAllocator.Allocation second = allocator.allocate(true)
+            ) {
+                assertTrue(first.getPortOffset() >= 10, () -> "Expected the bound port to be skipped: " + first.getPortOffset());
+                assertTrue(second.getPortOffset() > first.getPortOffset());
+                assertTrue(first.getDebugPort() >= port + 2);
+                assertTrue(second.getDebugPort() > first.getDebugPort());
+
+                final List<String> command = commandBuilder.build();
+                assertArgumentExists(command, "-Djboss.socket.binding.port-offset=" + first.getPortOffset(), 1);
+                assertTrue(command.stream().anyMatch(arg -> arg.startsWith("-agentlib:jdwp") && arg.endsWith("address=" + first.getDebugPort())),
+                        () -> "Expected the debug port to be set: " + command);
+                first.close();
+                // The offset of the closed allocation can be allocated again
+                try (PortAllocator.Allocation third = allocator.allocate(false)) {
+                    assertEquals(first.getPortOffset(), third.getPortOffset());
+                    assertEquals(-1, third.getDebugPort());
+                }
+            }
+        }
+    }
+
+    private static String findArchive(final List<String> command) {
+        for (String arg : command) {
+            if (arg.startsWith("-XX:SharedArchiveFile=") || arg.startsWith("-XX:ArchiveClassesAtExit=")) {
+                return arg.substring(arg.indexOf('=') + 1);
+            }
+        }
+        return null;
+    }
+
     private void testEnhancedSecurityManager(final Collection<String> command, final int expectedCount) {
         // If we're using Java 12+, but less than 24 ensure enhanced security manager option was added
         if (command.contains("-secmgr") && Jvm.current().enhancedSecurityManagerAvailable()) {
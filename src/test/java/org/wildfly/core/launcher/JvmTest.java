@@ -6,6 +6,10 @@
 package org.wildfly.core.launcher;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 import java.io.IOException;
@@ -15,9 +19,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -37,19 +50,193 @@ class JvmTest {
             assertEquals(isSecurityManagerSupported, jvm.isSecurityManagerSupported(), () ->
                     String.format("Expected version %s to %s support the security manager", version, (isSecurityManagerSupported ? "" : "not")));
         } finally {
-            Files.walkFileTree(javaHome, new SimpleFileVisitor<>() {
-                @Override
-                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                    Files.delete(file);
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
-                    Files.delete(dir);
-                    return FileVisitResult.CONTINUE;
-                }
+            deleteDirectory(javaHome);
+        }
+    }
+
+    @Test
+    void cachedCapabilities() throws Exception {
+        final Path cacheDir = Files.createTempDirectory("jvm-cache");
+        final Path javaHome = createFakeJavaHome("21.0.5");
+        try {
+            final JvmCache cache = new JvmCache(cacheDir);
+            assertNull(cache.get(javaHome), "Expected no entry in an empty cache");
+            final JvmCapabilities capabilities = new JvmCapabilities(21, "21.0.5+11-LTS", "Test Vendor", true, true, true,
+                    Map.of("--add-opens=java.base/java.lang=ALL-UNNAMED", true, "--add-opens=java.base/invalid=ALL-UNNAMED", false));
+            cache.put(javaHome, capabilities);
+            assertSame(capabilities, cache.get(javaHome));
+
+            // A new cache should read the persisted entry
+            final JvmCapabilities persisted = new JvmCache(cacheDir).get(javaHome);
+            assertNotNull(persisted, "Expected the entry to be persisted");
+            assertTrue(persisted.isModular());
+            assertTrue(persisted.isSecurityManagerSupported());
+            assertTrue(persisted.isEnhancedSecurityManager());
+            assertEquals(21, persisted.getFeatureVersion());
+            assertEquals("21.0.5+11-LTS", persisted.getRuntimeVersion());
+            assertEquals("Test Vendor", persisted.getVendor());
+            assertEquals(Boolean.TRUE, persisted.isArgumentAvailable("--add-opens=java.base/java.lang=ALL-UNNAMED"));
+            assertEquals(Boolean.FALSE, persisted.isArgumentAvailable("--add-opens=java.base/invalid=ALL-UNNAMED"));
+            assertNull(persisted.isArgumentAvailable("--add-opens=java.base/java.io=ALL-UNNAMED"));
+
+            // Upgrading the JVM in place should invalidate the entry
+            writeReleaseFile(javaHome, "24");
+            assertNull(cache.get(javaHome), "Expected the in-memory entry to be invalidated");
+            assertNull(new JvmCache(cacheDir).get(javaHome), "Expected the persisted entry to be invalidated");
+
+            // A probe which could not determine the version is not cached and is retried
+            final JvmCapabilities incomplete = new JvmCapabilities(-1, null, null, false, false, false, Map.of());
+            final AtomicInteger probes = new AtomicInteger();
+            assertSame(incomplete, cache.resolve(javaHome, home -> {
+                probes.incrementAndGet();
+                return incomplete;
+            }));
+            assertNull(cache.get(javaHome), "Did not expect incomplete capabilities to be cached");
+            assertNull(new JvmCache(cacheDir).get(javaHome), "Did not expect incomplete capabilities to be persisted");
+            cache.resolve(javaHome, home -> {
+                probes.incrementAndGet();
+                return incomplete;
             });
+            assertEquals(2, probes.get());
+
+            // Concurrent requests for the same Java home share a single probe
+            writeReleaseFile(javaHome, "21.0.5");
+            final JvmCache concurrent = new JvmCache(null);
+            final CountDownLatch probing = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger concurrentProbes = new AtomicInteger();
+            final List<CompletableFuture<JvmCapabilities>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> concurrent.resolve(javaHome, home -> {
+                    concurrentProbes.incrementAndGet();
+                    probing.countDown();
+                    try {
+                        assertTrue(release.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return capabilities;
+                })));
+            }
+            assertTrue(probing.await(10, TimeUnit.SECONDS));
+            // Give the other requests time to join the probe in progress
+            TimeUnit.MILLISECONDS.sleep(200L);
+            release.countDown();
+            for (CompletableFuture<JvmCapabilities> result : results) {
+                assertSame(capabilities, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, concurrentProbes.get());
+        } finally {
+            deleteDirectory(javaHome);
+            deleteDirectory(cacheDir);
+        }
+    }
+
+    @Test
+    void lazyCapabilities() throws Exception {
+        final Path javaHome = createFakeJavaHome("21.0.5");
+        try {
+            // Without a release file a query of the capabilities launches the fake java executable, which fails and is
+            // remembered
+            Files.delete(javaHome.resolve("release"));
+            final Jvm jvm = Jvm.of(javaHome);
+            assertEquals(javaHome, jvm.getPath());
+            assertTrue(jvm.getCommand().startsWith(javaHome.resolve("bin").toString()), jvm.getCommand());
+            // Disabling the security manager does not need to know whether the JVM supports it
+            final StandaloneCommandBuilder builder = StandaloneCommandBuilder.of(System.getProperty("jboss.home"))
+                    .setJavaHome(javaHome)
+                    .setUseSecurityManager(false);
+            writeReleaseFile(javaHome, "21.0.5");
+            assertEquals(21, jvm.getFeatureVersion(), "Did not expect the capabilities to be probed before the first query");
+            assertEquals(21, builder.environment.getJvm().getFeatureVersion(),
+                    "Did not expect disabling the security manager to probe the JVM");
+        } finally {
+            deleteDirectory(javaHome);
+        }
+    }
+
+    @Test
+    void failedProbeNotRepeated() throws Exception {
+        final Path javaHome = createFakeJavaHome("21.0.5");
+        try {
+            // Without a release file the fake java executable is launched, which fails
+            Files.delete(javaHome.resolve("release"));
+            final Jvm jvm = Jvm.of(javaHome);
+            assertEquals(-1, jvm.getFeatureVersion());
+            // The failure is remembered, the release file is not read again for the following queries
+            writeReleaseFile(javaHome, "21.0.5");
+            assertEquals(-1, jvm.getFeatureVersion());
+            assertEquals(21, Jvm.of(javaHome).getFeatureVersion());
+        } finally {
+            deleteDirectory(javaHome);
+        }
+    }
+
+    @Test
+    void inspectReleaseFile() throws Exception {
+        final Path javaHome = createFakeJavaHome("21.0.5");
+        try {
+            Files.write(javaHome.resolve("release"), List.of(
+                    "IMPLEMENTOR=\"Test Vendor\"",
+                    "JAVA_RUNTIME_VERSION=\"21.0.5+11-LTS\"",
+                    "JAVA_VERSION=\"21.0.5\"",
+                    "MODULES=\"java.base java.logging java.naming\""
+            ), StandardCharsets.UTF_8);
+            final JvmInspector inspector = JvmInspector.of(javaHome);
+            assertEquals("21.0.5", inspector.getJavaVersion());
+            assertEquals(21, inspector.getFeatureVersion());
+            assertEquals("21.0.5+11-LTS", inspector.getRuntimeVersion());
+            assertEquals("Test Vendor", inspector.getImplementor());
+            assertEquals(Set.of("java.base", "java.logging", "java.naming"), inspector.getModules());
+            // There is no module image to check the arguments against
+            assertNull(inspector.checkArguments(List.of("--add-opens=java.base/java.lang=ALL-UNNAMED")));
+
+            // The release file alone should be enough to resolve the capabilities without launching a process
+            final Jvm jvm = Jvm.of(javaHome);
+            assertSame(jvm, jvm.resolveAsync().get(30, TimeUnit.SECONDS));
+            assertEquals(21, jvm.getFeatureVersion());
+            assertEquals("Test Vendor", jvm.getVendor());
+            assertTrue(jvm.isModular());
+            assertTrue(jvm.enhancedSecurityManagerAvailable());
+        } finally {
+            deleteDirectory(javaHome);
+        }
+    }
+
+    @Test
+    void inspectModuleImage() {
+        final JvmInspector inspector = JvmInspector.of(Path.of(System.getProperty("java.home")));
+        final Map<String, Boolean> arguments = inspector.checkArguments(List.of(
+                "--add-opens=java.base/java.lang=ALL-UNNAMED",
+                "--add-opens=java.base/org.wildfly.invalid=ALL-UNNAMED",
+                "--add-exports=org.wildfly.invalid/org.wildfly.invalid=ALL-UNNAMED"
+        ));
+        assertNotNull(arguments, "Expected the module image of the current JVM to be readable");
+        assertEquals(Boolean.TRUE, arguments.get("--add-opens=java.base/java.lang=ALL-UNNAMED"));
+        assertEquals(Boolean.FALSE, arguments.get("--add-opens=java.base/org.wildfly.invalid=ALL-UNNAMED"));
+        assertEquals(Boolean.FALSE, arguments.get("--add-exports=org.wildfly.invalid/org.wildfly.invalid=ALL-UNNAMED"));
+    }
+
+    @Test
+    void registry() throws Exception {
+        final Path root = Files.createTempDirectory("jdk-registry");
+        try {
+            final Path jdk17 = createFakeJavaHome(root.resolve("jdk-17"), "17.0.13");
+            final Path jdk21 = createFakeJavaHome(root.resolve("jdk-21"), "21.0.5");
+            final Path jdk8 = createFakeJavaHome(root.resolve("jdk-8"), "1.8.0_432");
+            Files.createDirectory(root.resolve("not-a-jdk"));
+
+            final JdkRegistry registry = JdkRegistry.of(List.of(root));
+            assertEquals(3, registry.getJdks().size(), () -> "Expected three JDKs in " + registry);
+            assertEquals(21, registry.getJdks().get(0).getFeatureVersion());
+            assertEquals(jdk21.toRealPath(), registry.find(21).orElseThrow().getPath());
+            assertEquals(jdk17.toRealPath(), registry.find(17).orElseThrow().getPath());
+            assertTrue(registry.find(11).isEmpty(), "Expected no JDK with a feature version of 11");
+            final JdkRegistry.Jdk legacy = registry.find(jdk -> !jdk.isModular()).orElseThrow();
+            assertEquals(jdk8.toRealPath(), legacy.getPath());
+            assertEquals(8, legacy.getFeatureVersion());
+        } finally {
+            deleteDirectory(root);
         }
     }
 
@@ -75,11 +262,35 @@ class JvmTest {
     }
 
     private static Path createFakeJavaHome(final String version) throws IOException {
-        final Path javaHome = Files.createTempDirectory("fake-java-home");
+        return createFakeJavaHome(Files.createTempDirectory("fake-java-home"), version);
+    }
+
+    private static Path createFakeJavaHome(final Path javaHome, final String version) throws IOException {
+        Files.createDirectories(javaHome);
         Files.createFile(Files.createDirectory(javaHome.resolve("bin"))
                 .resolve(Environment.isWindows() ? "java.exe" : "java"));
+        writeReleaseFile(javaHome, version);
+        return javaHome;
+    }
+
+    private static void writeReleaseFile(final Path javaHome, final String version) throws IOException {
         final Path releaseFile = javaHome.resolve("release");
         Files.write(releaseFile, Collections.singleton(String.format("JAVA_VERSION=\"%s\"%n", version)), StandardCharsets.UTF_8);
-        return javaHome;
+    }
+
+    private static void deleteDirectory(final Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
     }
 }
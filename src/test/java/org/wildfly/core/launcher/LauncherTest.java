@@ -5,17 +5,41 @@
 
 package org.wildfly.core.launcher;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -55,6 +79,471 @@ class LauncherTest {
         checkProcess(Launcher.of(commandBuilder).addEnvironmentVariables(env));
     }
 
+    @Test
+    void launchAsync() throws Exception {
+        // The boot marker is printed as one of the system properties of the JVM
+        final LaunchHandle handle = Launcher.of(new TestCommandBuilder("-Dtest.marker=WFLYSRV0025", "-XshowSettings:properties"))
+                .redirectOutput(stdout)
+                .launchAsync();
+        final Process process = handle.started().get(5, TimeUnit.SECONDS);
+        try {
+            assertSame(process, handle.booted().get(5, TimeUnit.SECONDS));
+            assertSame(process, handle.onExit().get(5, TimeUnit.SECONDS));
+            assertEquals(0, process.exitValue());
+            final String output = Files.readString(stdout);
+            assertTrue(output.contains("test.marker = WFLYSRV0025"), () -> "Expected the output to be written to the file: " + output);
+        } finally {
+            ProcessHelper.destroyProcess(process);
+        }
+    }
+
+    @Test
+    void launchAsyncExitBeforeBoot() throws Exception {
+        final LaunchHandle handle = Launcher.of(new TestCommandBuilder()).launchAsync();
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> handle.booted().get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException, () -> "Expected an IllegalStateException: " + e.getCause());
+        assertEquals(0, handle.onExit().get(5, TimeUnit.SECONDS).exitValue());
+    }
+
+    @Test
+    void launchAsyncBootFailed() throws Exception {
+        final LaunchHandle handle = Launcher.of(new TestCommandBuilder("-Dtest.marker=WFLYSRV0056", "-XshowSettings:properties"))
+                .launchAsync();
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> handle.booted().get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("WFLYSRV0056"), () -> "Expected the failure message id: " + e.getCause());
+        handle.onExit().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void launchAsyncSharedOutput() throws Exception {
+        final List<Path> outputs = new ArrayList<>();
+        final List<LaunchHandle> handles = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                final Path output = Files.createTempFile("stdout-" + i, ".txt");
+                outputs.add(output);
+                handles.add(Launcher.of(new TestCommandBuilder("-Dtest.index=" + i, "-XshowSettings:properties"))
+                        .redirectOutput(output)
+                        .launchAsync());
+            }
+            for (int i = 0; i < handles.size(); i++) {
+                assertEquals(0, handles.get(i).onExit().get(30, TimeUnit.SECONDS).exitValue());
+                final String output = Files.readString(outputs.get(i));
+                final String expected = "test.index = " + i;
+                assertTrue(output.contains(expected), () -> "Expected all the output to be written before the process exited: " + output);
+            }
+            final long outputThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("wildfly-launcher-output-"))
+                    .count();
+            assertTrue(outputThreads <= 4, () -> "Expected the output to be consumed by at most 4 threads: " + outputThreads);
+        } finally {
+            for (Path output : outputs) {
+                Files.deleteIfExists(output);
+            }
+        }
+    }
+
+    @Test
+    void captureOutput() throws Exception {
+        final OutputCapture capture = OutputCapture.of(512);
+        final LaunchHandle handle = Launcher.of(new TestCommandBuilder("-XshowSettings:properties"))
+                .redirectOutput(stdout)
+                .captureOutput(capture)
+                .launchAsync();
+        final Process process = handle.started().get(5, TimeUnit.SECONDS);
+        try {
+            // The future completes once all the output has been consumed
+            assertEquals(0, handle.onExit().get(5, TimeUnit.SECONDS).exitValue());
+            final byte[] output = Files.readAllBytes(stdout);
+            assertTrue(output.length > capture.getCapacity(), "Expected more output than the capture can keep");
+            assertEquals(output.length, capture.getTotalBytes());
+            assertArrayEquals(Arrays.copyOfRange(output, output.length - 512, output.length), capture.snapshot());
+        } finally {
+            ProcessHelper.destroyProcess(process);
+        }
+
+        // Writes which wrap around the end of the buffer and writes larger than the buffer
+        final OutputCapture ring = OutputCapture.of(8);
+        final byte[] bytes = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        ring.write(bytes, 0, 5);
+        assertEquals("01234", ring.snapshot(StandardCharsets.US_ASCII));
+        ring.write(bytes, 5, 6);
+        assertEquals("3456789a", ring.snapshot(StandardCharsets.US_ASCII));
+        ring.write(bytes, 0, 16);
+        assertEquals("89abcdef", ring.snapshot(StandardCharsets.US_ASCII));
+        assertEquals(27L, ring.getTotalBytes());
+    }
+
+    @Test
+    void rollingFileOutput() throws Exception {
+        final Path dir = Files.createTempDirectory("rolling-output");
+        try {
+            final Path file = dir.resolve("console.log");
+            final RollingFileOutput output = RollingFileOutput.of(file)
+                    .setMaxSize(250L)
+                    .setMaxBackups(2)
+                    .setCompress(true);
+            // A file left by a roll which failed to be compressed is retried on the next roll
+            Files.writeString(dir.resolve("console.log.rolling-0"), "failed");
+            final byte[] chunk = new byte[100];
+            try (OutputStream out = output.open()) {
+                for (int i = 0; i < 10; i++) {
+                    Arrays.fill(chunk, (byte) ('0' + i));
+                    out.write(chunk);
+                }
+            }
+            // The rolled files are compressed in the background
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+            while (true) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    if (files.noneMatch(f -> f.getFileName().toString().contains(".rolling-"))
+                            && Files.exists(dir.resolve("console.log.2.gz"))) {
+                        break;
+                    }
+                }
+                assertTrue(System.nanoTime() - deadline < 0L, "Expected the rolled files to be compressed");
+                TimeUnit.MILLISECONDS.sleep(20L);
+            }
+            // Each file holds two chunks, the oldest backups have been deleted
+            assertEquals("8".repeat(100) + "9".repeat(100), Files.readString(file));
+            assertEquals("6".repeat(100) + "7".repeat(100), readCompressed(dir.resolve("console.log.1.gz")));
+            assertEquals("4".repeat(100) + "5".repeat(100), readCompressed(dir.resolve("console.log.2.gz")));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(3L, files.count());
+            }
+
+            // The output of a launched process is appended to the file
+            final LaunchHandle handle = Launcher.of(new TestCommandBuilder("-Dtest.marker=WFLYSRV0025", "-XshowSettings:properties"))
+                    .redirectOutput(output.setMaxSize(1024L * 1024L))
+                    .launchAsync();
+            handle.booted().get(5, TimeUnit.SECONDS);
+            handle.onExit().get(5, TimeUnit.SECONDS);
+            final String content = Files.readString(file);
+            assertTrue(content.contains("test.marker = WFLYSRV0025"), () -> "Expected the output to be written to the file: " + content);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void standbyPool() throws Exception {
+        final List<List<String>> commands = new CopyOnWriteArrayList<>();
+        final List<StandbyServer> resumed = new CopyOnWriteArrayList<>();
+        // Each server uses its own base directory
+        final Path baseDirs = Files.createTempDirectory("standby-pool");
+        final AtomicInteger servers = new AtomicInteger();
+        final Supplier<StandaloneCommandBuilder> builders = () -> {
+            try {
+                return StandaloneCommandBuilder.of(System.getProperty("jboss.home"))
+                        .setBaseDirectory(Files.createDirectory(baseDirs.resolve("server-" + servers.incrementAndGet())));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            try (
+                    StandbyPool pool = StandbyPool.of(builders, resumed::add)
+                            .setCapacity(2)
+                            .setLauncherFactory(builder -> {
+                                commands.add(builder.build());
+                                return Launcher.of(new MainCommandBuilder(BootedServer.class));
+                            })
+                            .start()
+            ) {
+                waitFor(() -> pool.getReadyCount() == 2);
+                final StandbyServer server = pool.acquire(10, TimeUnit.SECONDS);
+                try {
+                    assertEquals(List.of(server), resumed);
+                    assertTrue(server.getProcess().isAlive());
+                    assertEquals(9990 + server.getPortOffset(), server.getManagementPort());
+                } finally {
+                    server.close();
+                }
+                assertTrue(server.getProcess().onExit().get(5, TimeUnit.SECONDS).exitValue() != 0);
+                // The acquired server is replaced
+                waitFor(() -> pool.getReadyCount() == 2);
+                assertEquals(3, commands.size());
+                for (List<String> command : commands) {
+                    assertTrue(command.contains("--start-mode=suspend"), () -> "Expected the server to start suspended: " + command);
+                }
+                assertEquals(3L, commands.stream()
+                        .map(command -> command.stream().filter(arg -> arg.startsWith("-Djboss.socket.binding.port-offset=")).findFirst().orElseThrow())
+                        .distinct()
+                        .count(), () -> "Expected each server to have a different port offset: " + commands);
+            }
+        } finally {
+            try (Stream<Path> dirs = Files.list(baseDirs)) {
+                for (Path dir : (Iterable<Path>) dirs::iterator) {
+                    Files.delete(dir);
+                }
+            }
+            Files.delete(baseDirs);
+        }
+    }
+
+    @Test
+    void processSupervisor() throws Exception {
+        try (
+                ProcessSupervisor supervisor = ProcessSupervisor.create()
+                        .setBackoff(10L, 40L, TimeUnit.MILLISECONDS)
+                        .setCrashLoop(3, 1L, TimeUnit.MINUTES)
+        ) {
+            // A process which always exits is restarted until it is considered to be crash looping
+            final ProcessSupervisor.Supervised crashing = supervisor.supervise(Launcher.of(new TestCommandBuilder()));
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> crashing.terminated().get(30, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException, () -> "Expected a crash loop failure: " + e.getCause());
+            assertTrue(crashing.isCrashLooping());
+            assertEquals(3, crashing.getRestartCount());
+            // The backoff between the restarts was 10, 20 and 40 milliseconds
+            assertTrue(crashing.getDowntime(TimeUnit.MILLISECONDS) >= 70L, () -> "Unexpected downtime: " + crashing.getDowntime(TimeUnit.MILLISECONDS));
+
+            final ProcessSupervisor.Supervised running = supervisor.supervise(Launcher.of(new MainCommandBuilder(BootedServer.class)));
+            final Process process = running.getProcess();
+            assertTrue(process.isAlive());
+            running.stop();
+            running.terminated().get(5, TimeUnit.SECONDS);
+            assertFalse(process.isAlive());
+            assertEquals(0, running.getRestartCount());
+            assertFalse(running.isCrashLooping());
+        }
+        assertThrows(IllegalArgumentException.class, () -> ProcessSupervisor.create().setBackoff(1L, 2L, null));
+        assertThrows(IllegalArgumentException.class, () -> ProcessSupervisor.create().setCrashLoop(1, 1L, null));
+    }
+
+    @Test
+    void terminateProcessTree() throws Exception {
+        Files.delete(stdout);
+        final Process process = Launcher.of(new MainCommandBuilder(ProcessTree.class, "parent", stdout.toString()))
+                .redirectOutput(Redirect.DISCARD)
+                .launch();
+        try {
+            // Wait for the child, which ignores a normal termination, to have started
+            waitFor(() -> Files.exists(stdout));
+            final ProcessHandle child = process.descendants().findFirst().orElseThrow();
+            final ProcessTermination termination = ProcessHelper.terminate(process, 500L, TimeUnit.MILLISECONDS);
+            assertTrue(termination.isTerminated(), () -> "Expected all the processes to have exited: " + termination);
+            assertEquals(List.of(process.pid(), child.pid()), List.copyOf(termination.getOutcomes().keySet()));
+            assertEquals(ProcessTermination.Outcome.TERMINATED, termination.getOutcome(process.pid()));
+            assertEquals(ProcessTermination.Outcome.KILLED, termination.getOutcome(child.pid()));
+            assertFalse(child.isAlive());
+
+            final ProcessTermination exited = ProcessHelper.terminate(process, 1L, TimeUnit.SECONDS);
+            assertEquals(Map.of(process.pid(), ProcessTermination.Outcome.EXITED), exited.getOutcomes());
+        } finally {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    @Test
+    void destroyOnShutdown() throws Exception {
+        // The process registers a child process to be destroyed on shutdown, writes the pid of the child and exits
+        final Process process = Launcher.of(new MainCommandBuilder(ShutdownRegistration.class, stdout.toString()))
+                .redirectOutput(Redirect.DISCARD)
+                .launch();
+        assertEquals(0, process.onExit().get(30, TimeUnit.SECONDS).exitValue());
+        final long pid = Long.parseLong(Files.readString(stdout).trim());
+        final ProcessHandle child = ProcessHandle.of(pid).orElse(null);
+        if (child != null) {
+            child.onExit().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void aotCacheTraining() throws Exception {
+        final Path dir = Files.createTempDirectory("aot-cache");
+        try {
+            final AotCache aotCache = new AotCache(dir, "test");
+            final AtomicInteger recordings = new AtomicInteger();
+            final CountDownLatch recording = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            // The fake JVM records the configuration on shutdown and creates the cache from it on any JDK
+            final Function<String, Function<AotCache.Step, List<String>>> fakeJvm = key -> step -> {
+                final List<String> cmd = new ArrayList<>(new MainCommandBuilder(AotTraining.class, key).build());
+                aotCache.addOptions(step, key, cmd);
+                if (cmd.contains("-XX:AOTMode=record")) {
+                    recordings.incrementAndGet();
+                    if (key.endsWith("-blocked")) {
+                        recording.countDown();
+                        try {
+                            assertTrue(release.await(30, TimeUnit.SECONDS));
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+                return cmd;
+            };
+
+            // Record, create and use the cache
+            aotCache.train(fakeJvm.apply("test-layout-trained"), null, Map.of());
+            final Path cache = dir.resolve("test-layout-trained.aot");
+            assertEquals("configuration", Files.readString(cache));
+            assertFalse(Files.exists(dir.resolve("test-layout-trained.aotconf")), "Expected the configuration to be deleted");
+            final AotCache.Step use = new AotCache.Step(AotCache.Mode.USE);
+            assertTrue(aotCache.addOptions(use, "test-layout-trained", new ArrayList<>()));
+            assertEquals(cache, use.getCache());
+            aotCache.train(fakeJvm.apply("test-layout-trained"), null, Map.of());
+            assertEquals(1, recordings.get());
+
+            // A failed training is not repeated, even by a new cache, and the process is launched without a cache
+            aotCache.train(fakeJvm.apply("test-layout-failed"), null, Map.of());
+            new AotCache(dir, "test").train(fakeJvm.apply("test-layout-failed"), null, Map.of());
+            assertEquals(2, recordings.get());
+            assertFalse(Files.exists(dir.resolve("test-layout-failed.aot")), "Did not expect a cache");
+            final List<String> failed = new ArrayList<>();
+            assertFalse(aotCache.addOptions(new AotCache.Step(AotCache.Mode.USE), "test-layout-failed", failed));
+            assertTrue(failed.isEmpty(), () -> "Did not expect cache options: " + failed);
+
+            // Launches while the cache is being trained do not wait and do not use the partially written cache
+            final CompletableFuture<Void> training = CompletableFuture.runAsync(() ->
+                    aotCache.train(fakeJvm.apply("test-layout-blocked"), null, Map.of()));
+            try {
+                assertTrue(recording.await(30, TimeUnit.SECONDS));
+                aotCache.train(fakeJvm.apply("test-layout-blocked"), null, Map.of());
+                assertEquals(3, recordings.get());
+                Files.writeString(dir.resolve("test-layout-blocked.aot"), "partial");
+                assertFalse(aotCache.addOptions(new AotCache.Step(AotCache.Mode.USE), "test-layout-blocked", new ArrayList<>()));
+            } finally {
+                release.countDown();
+            }
+            training.get(30, TimeUnit.SECONDS);
+            assertEquals("configuration", Files.readString(dir.resolve("test-layout-blocked.aot")));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void launchAll() throws Exception {
+        final List<CommandBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            builders.add(new TestCommandBuilder("-Dtest.marker=WFLYSRV0025", "-XshowSettings:properties"));
+        }
+        final FleetHandle fleet = Launcher.launchAll(builders, 2);
+        assertEquals(3, fleet.getHandles().size());
+        fleet.allBooted().get(30, TimeUnit.SECONDS);
+        for (LaunchHandle handle : fleet.getHandles()) {
+            assertEquals(0, handle.onExit().get(5, TimeUnit.SECONDS).exitValue());
+        }
+        assertThrows(IllegalArgumentException.class, () -> Launcher.launchAll(builders, 0));
+    }
+
+    @Test
+    void fleetBootTimeout() throws Exception {
+        // A server which does not boot must not keep the next server from being launched
+        final FleetHandle fleet = FleetLauncher.of(List.of(Launcher.of(new MainCommandBuilder(HungServer.class)),
+                        Launcher.of(new TestCommandBuilder("-Dtest.marker=WFLYSRV0025", "-XshowSettings:properties"))))
+                .setMaxConcurrentBoots(1)
+                .setBootTimeout(500L, TimeUnit.MILLISECONDS)
+                .launch();
+        final LaunchHandle hung = fleet.getHandles().get(0);
+        try {
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> hung.booted().get(30, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof TimeoutException, () -> "Expected a boot timeout: " + e.getCause());
+            fleet.getHandles().get(1).booted().get(30, TimeUnit.SECONDS);
+        } finally {
+            hung.started().get(30, TimeUnit.SECONDS).destroyForcibly();
+        }
+        assertThrows(IllegalArgumentException.class, () -> FleetLauncher.of(List.of()).setBootTimeout(-1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void logFileWatcher() throws Exception {
+        // Output from a previous boot should be ignored
+        Files.writeString(stdout, "WFLYSRV0025: WildFly started in 1234ms\n");
+        try (LogFileWatcher watcher = LogFileWatcher.watch(stdout)) {
+            Files.writeString(stdout, "WFLYSRV0050: WildFly stopped in 12ms\n", StandardOpenOption.APPEND);
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> watcher.booted().get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause().getMessage().contains("WFLYSRV0050"), () -> "Expected the stopped message id: " + e.getCause());
+        }
+        // Redirecting the output to the file again truncates it
+        Files.writeString(stdout, "WFLYSRV0049: WildFly starting\n");
+        try (LogFileWatcher watcher = LogFileWatcher.watchFromStart(stdout)) {
+            Files.writeString(stdout, "WFLYSRV0026: WildFly started (with errors) in 1234ms\n", StandardOpenOption.APPEND);
+            assertEquals(stdout.toAbsolutePath().normalize(), watcher.booted().get(5, TimeUnit.SECONDS));
+            assertTrue(watcher.isBootedWithErrors(), "Expected the server to have booted with errors");
+        }
+        // The thread watching the files exits once no file is watched
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().equals("wildfly-launcher-log-watcher"))) {
+            assertTrue(System.nanoTime() - deadline < 0L, "Expected the log watcher thread to exit");
+            TimeUnit.MILLISECONDS.sleep(20L);
+        }
+    }
+
+    @Test
+    void logFileWatcherBusyDirectory() throws Exception {
+        // Events of a busy directory must not delay watching a log directory which is created after the watcher
+        final Path dir = Files.createTempDirectory("log-dirs");
+        final Path serverLog = dir.resolve("log").resolve("server.log");
+        final Thread writer = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Files.writeString(stdout, "WFLYSRV0049: WildFly starting\n", StandardOpenOption.APPEND);
+                    TimeUnit.MILLISECONDS.sleep(20L);
+                }
+            } catch (IOException | InterruptedException ignore) {
+            }
+        });
+        try (
+                LogFileWatcher busy = LogFileWatcher.watch(stdout);
+                LogFileWatcher watcher = LogFileWatcher.watch(serverLog)
+        ) {
+            writer.start();
+            Files.createDirectories(serverLog.getParent());
+            Files.writeString(serverLog, "WFLYSRV0025: WildFly started in 1234ms\n");
+            assertEquals(serverLog.toAbsolutePath().normalize(), watcher.booted().get(5, TimeUnit.SECONDS));
+            assertFalse(busy.booted().isDone(), "Expected the busy file to still be watched");
+        } finally {
+            writer.interrupt();
+            writer.join();
+            Files.deleteIfExists(serverLog);
+            Files.deleteIfExists(serverLog.getParent());
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void bootMarkerDetector() {
+        final byte[] output = "12:00:00,000 INFO  [org.jboss.as] (Controller Boot Thread) WFLYSRV0049: WildFly starting\n"
+                .concat("WFLYSRV002 WFLYWFLYSRV0026: WildFly started (with errors) in 1234ms\n")
+                .getBytes(StandardCharsets.UTF_8);
+        // Feed the output in small chunks to ensure a message id split between reads is detected
+        for (int chunkSize = 1; chunkSize <= output.length; chunkSize++) {
+            final BootMarkerDetector detector = new BootMarkerDetector();
+            BootMarkerDetector.Status status = null;
+            for (int offset = 0; offset < output.length && status == null; offset += chunkSize) {
+                status = detector.update(output, offset, Math.min(chunkSize, output.length - offset));
+            }
+            assertEquals(BootMarkerDetector.Status.STARTED_WITH_ERRORS, status, "Chunk size " + chunkSize);
+        }
+    }
+
+    private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < timeout, "Timed out waiting for the condition");
+            TimeUnit.MILLISECONDS.sleep(20L);
+        }
+    }
+
+    private static String readCompressed(final Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+
     private void checkProcess(final Launcher launcher) throws IOException, InterruptedException {
         Process process = null;
         try {
@@ -71,14 +560,140 @@ class LauncherTest {
      * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
      */
     private static class TestCommandBuilder implements CommandBuilder {
+        private final List<String> arguments;
+
+        private TestCommandBuilder(final String... arguments) {
+            this.arguments = new ArrayList<>(List.of(arguments));
+            this.arguments.add("-version");
+        }
+
+        @Override
+        public List<String> buildArguments() {
+            return arguments;
+        }
+
+        @Override
+        public List<String> build() {
+            final List<String> cmd = new ArrayList<>();
+            cmd.add(Jvm.current().getCommand());
+            cmd.addAll(arguments);
+            return cmd;
+        }
+    }
+
+    private static class MainCommandBuilder implements CommandBuilder {
+        private final List<String> arguments;
+
+        private MainCommandBuilder(final Class<?> mainClass, final String... args) {
+            arguments = new ArrayList<>(List.of("-cp", System.getProperty("java.class.path"), mainClass.getName()));
+            arguments.addAll(List.of(args));
+        }
+
         @Override
         public List<String> buildArguments() {
-            return List.of();
+            return arguments;
         }
 
         @Override
         public List<String> build() {
-            return List.of(Jvm.current().getCommand(), "-version");
+            final List<String> cmd = new ArrayList<>();
+            cmd.add(Jvm.current().getCommand());
+            cmd.addAll(arguments);
+            return cmd;
+        }
+    }
+
+    /**
+     * Waits to be destroyed without logging that the server has booted.
+     */
+    public static class HungServer {
+        public static void main(final String[] args) throws Exception {
+            TimeUnit.MINUTES.sleep(2L);
+        }
+    }
+
+    /**
+     * Prints the message logged once a server has booted and waits to be destroyed.
+     */
+    public static class BootedServer {
+        public static void main(final String[] args) throws Exception {
+            System.out.println("INFO  [org.jboss.as] (Controller Boot Thread) WFLYSRV0025: Server started");
+            System.out.flush();
+            TimeUnit.MINUTES.sleep(2L);
+        }
+    }
+
+    /**
+     * Fakes the training steps of an ahead-of-time cache. A recording JVM boots and writes the configuration on
+     * shutdown, unless the key ends with {@code -failed} in which case it exits before booting. A creating JVM writes
+     * the cache from the configuration.
+     */
+    public static class AotTraining {
+        public static void main(final String[] args) throws Exception {
+            final Map<String, String> options = new HashMap<>();
+            for (String arg : args) {
+                final int index = arg.indexOf('=');
+                if (arg.startsWith("-XX:") && index > 0) {
+                    options.put(arg.substring(4, index), arg.substring(index + 1));
+                }
+            }
+            final Path configuration = Path.of(options.get("AOTConfiguration"));
+            if ("create".equals(options.get("AOTMode"))) {
+                Files.copy(configuration, Path.of(options.get("AOTCache")), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            if (args[0].endsWith("-failed")) {
+                System.exit(1);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.writeString(configuration, "configuration");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            BootedServer.main(args);
+        }
+    }
+
+    /**
+     * Starts a child process which does not exit when asked to terminate normally. The child creates the file passed
+     * as the second argument once it is ready.
+     */
+    public static class ProcessTree {
+        public static void main(final String[] args) throws Exception {
+            if ("parent".equals(args[0])) {
+                new ProcessBuilder(Jvm.current().getCommand(), "-cp", System.getProperty("java.class.path"),
+                        ProcessTree.class.getName(), "child", args[1])
+                        .redirectOutput(Redirect.DISCARD)
+                        .start();
+            } else {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        TimeUnit.MINUTES.sleep(2L);
+                    } catch (InterruptedException ignore) {
+                    }
+                }));
+                // Signal the child is ready
+                Files.createFile(Path.of(args[1]));
+            }
+            TimeUnit.MINUTES.sleep(2L);
+        }
+    }
+
+    /**
+     * Starts a process which is destroyed on shutdown and writes its pid to the file passed as the first argument.
+     */
+    public static class ShutdownRegistration {
+        public static void main(final String[] args) throws Exception {
+            final Process process = new ProcessBuilder(Jvm.current().getCommand(), "-cp", System.getProperty("java.class.path"),
+                    BootedServer.class.getName())
+                    .redirectOutput(Redirect.DISCARD)
+                    .start();
+            if (!ProcessHelper.destroyOnShutdown(process) || ProcessHelper.destroyOnShutdown(process)) {
+                throw new IllegalStateException("Expected the process to be registered once");
+            }
+            Files.writeString(Path.of(args[0]), Long.toString(process.pid()));
         }
     }
 }